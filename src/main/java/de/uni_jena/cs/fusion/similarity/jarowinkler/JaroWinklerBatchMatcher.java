@@ -0,0 +1,220 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Matches batches of queries against the terms of a
+ * {@link JaroWinklerSimilarity} instance using several threads of an
+ * {@link ExecutorService}. The queries are split into chunks of consecutive
+ * queries, which are claimed by a limited number of workers. Each worker
+ * reuses the same scratch buffers for all of its queries. The results are
+ * returned in the order of the queries.
+ *
+ * @param <T> Type of the values returned by the matching.
+ *
+ * @since 1.1.1
+ */
+public class JaroWinklerBatchMatcher<T> {
+
+	/**
+	 * Default number of consecutive queries claimed at once by a worker.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 32;
+
+	private final JaroWinklerSimilarity<T> similarity;
+	private final ExecutorService executor;
+	private final int parallelism;
+	private final int chunkSize;
+
+	/**
+	 * Prepares a {@link JaroWinklerBatchMatcher} using the
+	 * {@link ForkJoinPool#commonPool()} with its parallelism and the
+	 * {@link #DEFAULT_CHUNK_SIZE}.
+	 *
+	 * @param similarity {@link JaroWinklerSimilarity} instance to match the
+	 *                   queries with.
+	 */
+	public JaroWinklerBatchMatcher(JaroWinklerSimilarity<T> similarity) {
+		this(similarity, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Prepares a {@link JaroWinklerBatchMatcher} using the given
+	 * {@link ExecutorService}.
+	 *
+	 * @param similarity  {@link JaroWinklerSimilarity} instance to match the
+	 *                    queries with.
+	 * @param executor    {@link ExecutorService} to run the workers.
+	 * @param parallelism Maximum number of concurrent workers of a batch.
+	 * @param chunkSize   Number of consecutive queries claimed at once by a
+	 *                    worker.
+	 * @throws IllegalArgumentException if {@code parallelism} or
+	 *                                  {@code chunkSize} is less than 1
+	 */
+	public JaroWinklerBatchMatcher(JaroWinklerSimilarity<T> similarity, ExecutorService executor, int parallelism,
+			int chunkSize) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1.");
+		}
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be at least 1.");
+		}
+		this.similarity = similarity;
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Matches an array of {@link String}s against the terms of the
+	 * {@link JaroWinklerSimilarity} instance, considering a given threshold.
+	 *
+	 * @param queries   {@link String}s that will be compared to the terms to
+	 *                  calculate the similarity.
+	 * @param threshold Minimum similarity of matching terms.
+	 * @return {@link List} of {@link Map}s of the matching values and their
+	 *         ranking in the order of the queries.
+	 * @throws CancellationException if the current thread was interrupted while
+	 *                               waiting for the workers
+	 * @throws CompletionException   if a worker failed with a checked exception
+	 */
+	public List<Map<T, Double>> apply(String[] queries, double threshold) {
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Map<T, Double>[] results = new Map[queries.length];
+		AtomicInteger nextQuery = new AtomicInteger();
+		int workers = Math.min(this.parallelism, (queries.length + this.chunkSize - 1) / this.chunkSize);
+		if (workers <= 1) {
+			// avoid overhead of the executor
+			work(queries, threshold, results, nextQuery);
+		} else {
+			List<Callable<Void>> tasks = new ArrayList<>(workers);
+			for (int i = 0; i < workers; i++) {
+				tasks.add(() -> {
+					work(queries, threshold, results, nextQuery);
+					return null;
+				});
+			}
+			try {
+				for (Future<Void> future : this.executor.invokeAll(tasks)) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				CancellationException cancellation = new CancellationException("Interrupted while matching.");
+				cancellation.initCause(e);
+				throw cancellation;
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				} else if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				} else {
+					throw new CompletionException(e.getCause());
+				}
+			}
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Matches an array of {@link String}s against the terms of the
+	 * {@link JaroWinklerSimilarity} instance using the default threshold.
+	 *
+	 * @param queries {@link String}s that will be compared to the terms to
+	 *                calculate the similarity.
+	 * @return {@link List} of {@link Map}s of the matching values and their
+	 *         ranking in the order of the queries.
+	 *
+	 * @see #apply(String[], double)
+	 */
+	public List<Map<T, Double>> apply(String[] queries) {
+		return apply(queries, this.similarity.defaultThreshold());
+	}
+
+	/**
+	 * Matches a {@link Stream} of {@link String}s against the terms of the
+	 * {@link JaroWinklerSimilarity} instance, considering a given threshold. The
+	 * {@link Stream} will be consumed completely before the matching starts.
+	 *
+	 * @param queries   {@link String}s that will be compared to the terms to
+	 *                  calculate the similarity.
+	 * @param threshold Minimum similarity of matching terms.
+	 * @return {@link List} of {@link Map}s of the matching values and their
+	 *         ranking in the encounter order of the queries.
+	 *
+	 * @see #apply(String[], double)
+	 */
+	public List<Map<T, Double>> apply(Stream<String> queries, double threshold) {
+		return apply(queries.toArray(String[]::new), threshold);
+	}
+
+	/**
+	 * Matches a {@link Stream} of {@link String}s against the terms of the
+	 * {@link JaroWinklerSimilarity} instance using the default threshold.
+	 *
+	 * @param queries {@link String}s that will be compared to the terms to
+	 *                calculate the similarity.
+	 * @return {@link List} of {@link Map}s of the matching values and their
+	 *         ranking in the encounter order of the queries.
+	 *
+	 * @see #apply(String[], double)
+	 */
+	public List<Map<T, Double>> apply(Stream<String> queries) {
+		return apply(queries, this.similarity.defaultThreshold());
+	}
+
+	/**
+	 * Claims chunks of queries and matches them until all queries have been
+	 * claimed.
+	 */
+	private void work(String[] queries, double threshold, Map<T, Double>[] results, AtomicInteger nextQuery) {
+		TraversalState state = TraversalState.acquire(0, 0);
+		try {
+			int from;
+			while ((from = nextQuery.getAndAdd(this.chunkSize)) < queries.length) {
+				int to = Math.min(from + this.chunkSize, queries.length);
+				for (int i = from; i < to; i++) {
+					Map<T, Double> queryResults = new HashMap<>();
+					this.similarity.match(queries[i], new ResultCollector.MapCollector<T>(threshold, queryResults),
+							state);
+					results[i] = queryResults;
+				}
+			}
+		} finally {
+			state.release();
+		}
+	}
+}
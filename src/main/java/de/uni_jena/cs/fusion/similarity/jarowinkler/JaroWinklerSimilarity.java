@@ -20,10 +20,21 @@ package de.uni_jena.cs.fusion.similarity.jarowinkler;
  * #L%
  */
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
 /**
@@ -48,15 +59,50 @@ public class JaroWinklerSimilarity<T> implements Function<String, Map<T, Double>
 	public final static int COMMON_PREFIX_LENGTH_LIMIT = 4;
 	public final static double BOOST_THRESHOLD = 0.7;
 	public final static double BOOST_FACTOR = 0.1;
+	/**
+	 * Result of {@link #score(String, String, double)} for pairs of strings that
+	 * do not meet the threshold.
+	 * 
+	 * @since 1.1.1
+	 */
+	public final static double BELOW_THRESHOLD = -1;
 
-	private static int equalInRange(boolean[] array, boolean expected, int lowerBound, int upperBound) {
-		int result = 0;
-		for (int i = lowerBound; i <= upperBound; i++) {
-			if (array[i] == expected) {
-				result++;
-			}
-		}
-		return result;
+	/**
+	 * Strategies to match a query against the terms of a
+	 * {@link JaroWinklerSimilarity} instance. All strategies return equal
+	 * results.
+	 * 
+	 * @see JaroWinklerSimilarity#setEngine(Engine)
+	 * @since 1.1.1
+	 */
+	public enum Engine {
+		/**
+		 * Traversal of the term trie, skipping branches that can not meet the
+		 * threshold. Fastest for high thresholds.
+		 */
+		TRIE,
+		/**
+		 * Linear scan of a columnar copy of the terms grouped by length, which is
+		 * created once the engine gets selected. Fastest for low thresholds, which
+		 * prune little of the term trie, at the cost of additional memory.
+		 */
+		SCAN,
+		/**
+		 * Count filtering of the terms with an inverted index of their characters,
+		 * which is created once the engine gets selected, followed by the
+		 * verification of the remaining terms like {@link #SCAN}. Fast for
+		 * thresholds that most terms fail because of too few common characters,
+		 * at the cost of additional memory. In addition, each thread that has used
+		 * the engine keeps a buffer of one {@code int} per term of the largest
+		 * instance it has queried, for the lifetime of the thread.
+		 */
+		QGRAM,
+		/**
+		 * Choice of {@link #TRIE}, {@link #SCAN} or {@link #QGRAM} for each query
+		 * by the estimated work of each, as provided by
+		 * {@link JaroWinklerSimilarity#plan(String, double)}.
+		 */
+		AUTO
 	}
 
 	/**
@@ -76,7 +122,7 @@ public class JaroWinklerSimilarity<T> implements Function<String, Map<T, Double>
 		}
 	}
 
-	private static double jaroWinklerSimilarity(double commonCharacters, int length1, int length2,
+	static double jaroWinklerSimilarity(double commonCharacters, int length1, int length2,
 			double halfTranspositions, int commonPrefixLength) {
 
 		double jaroSimilarity = jaroSimilarity(commonCharacters, length1, length2, halfTranspositions);
@@ -89,12 +135,110 @@ public class JaroWinklerSimilarity<T> implements Function<String, Map<T, Double>
 	}
 
 	/**
-	 * @param threshold             Minimum similarity of matching terms.
-	 * @param termTrie              Current node of the term trie to process.
-	 * @param query                 Characters of the query string.
+	 * Returns the upper bound of the Jaro Winkler similarity of two strings of the
+	 * given lengths. The upper bound assumes that all characters of the shorter
+	 * string are common characters without transpositions and that the common
+	 * prefix is as long as possible.
+	 * 
+	 * @param queryLength length of the query
+	 * @param termLength  length of the term
+	 * @return upper bound of the similarity
+	 */
+	static double maxSimilarity(int queryLength, int termLength) {
+		int commonCharacters = Math.min(queryLength, termLength);
+		return jaroWinklerSimilarity(commonCharacters, queryLength, termLength, 0,
+				Math.min(COMMON_PREFIX_LENGTH_LIMIT, commonCharacters));
+	}
+
+	/**
+	 * Returns the minimum length of terms that can meet the threshold. Up to the
+	 * query length, the upper bound of the similarity increases with the term
+	 * length.
+	 * 
+	 * @param queryLength length of the query
+	 * @param threshold   minimum similarity of matching terms
+	 * @return minimum length of terms that can meet the threshold or
+	 *         {@code queryLength + 1}, if no term up to the query length can meet
+	 *         the threshold
+	 */
+	static int minTermLength(int queryLength, double threshold) {
+		int lowerBound = 0;
+		int upperBound = queryLength + 1;
+		// binary search of the first length meeting the threshold
+		while (lowerBound < upperBound) {
+			int termLength = (lowerBound + upperBound) >>> 1;
+			if (maxSimilarity(queryLength, termLength) >= threshold) {
+				upperBound = termLength;
+			} else {
+				lowerBound = termLength + 1;
+			}
+		}
+		return lowerBound;
+	}
+
+	/**
+	 * Returns the maximum length of terms that can meet the threshold. Beyond the
+	 * query length, the upper bound of the similarity decreases with the term
+	 * length.
+	 * 
+	 * @param queryLength length of the query
+	 * @param threshold   minimum similarity of matching terms
+	 * @return maximum length of terms that can meet the threshold,
+	 *         {@code queryLength - 1}, if no term from the query length on can meet
+	 *         the threshold, or {@link Integer#MAX_VALUE}, if the length of the
+	 *         terms is not limited
+	 */
+	static int maxTermLength(int queryLength, double threshold) {
+		if (maxSimilarity(queryLength, queryLength) < threshold) {
+			return queryLength - 1;
+		} else if (maxSimilarity(queryLength, Integer.MAX_VALUE) >= threshold) {
+			return Integer.MAX_VALUE;
+		}
+		// exponential search of a length not meeting the threshold
+		int lowerBound = queryLength;
+		int upperBound = Math.max(queryLength, 1) * 2;
+		while (maxSimilarity(queryLength, upperBound) >= threshold) {
+			lowerBound = upperBound;
+			if (upperBound > Integer.MAX_VALUE / 2) {
+				return Integer.MAX_VALUE;
+			}
+			upperBound *= 2;
+		}
+		// binary search of the last length meeting the threshold
+		while (lowerBound + 1 < upperBound) {
+			int termLength = (lowerBound + upperBound) >>> 1;
+			if (maxSimilarity(queryLength, termLength) >= threshold) {
+				lowerBound = termLength;
+			} else {
+				upperBound = termLength;
+			}
+		}
+		return lowerBound;
+	}
+
+	/**
+	 * Traverses the term trie for all given target lengths of the terms at once.
+	 * The assignment of common characters only depends on the window size, so the
+	 * given target lengths must share the same window size. Target lengths are
+	 * dropped as soon as their upper bound of the similarity falls below the
+	 * threshold. The query has to be set in the {@link TraversalState} before.
+	 * <p>
+	 * The traversal is iterative. The values passed from a trie node to its
+	 * children are kept in the frames of the {@link TraversalState}, indexed by
+	 * the level of the trie node below the given trie node. Therefore, the depth
+	 * of the traversal is not limited by the stack size of the thread.
+	 * 
+	 * @param termTrie              Trie node to start the traversal at. The
+	 *                              siblings of the trie node will not be
+	 *                              processed.
 	 * @param queryLength           Length of the query.
-	 * @param termTargetLength      Total length of the term to process.
 	 * @param windowSize            Window size to search for common characters.
+	 * @param termTargetLengthsFrom First index of the total lengths of the terms
+	 *                              to process in
+	 *                              {@link TraversalState#termTargetLengths}.
+	 * @param termTargetLengthsTo   Last index (exclusive) of the total lengths of
+	 *                              the terms to process in
+	 *                              {@link TraversalState#termTargetLengths}.
 	 * @param minCommonCharacters   Min number of characters in common in term and
 	 *                              query.
 	 * @param minHalfTranspositions Min number of half transpositions
@@ -103,91 +247,192 @@ public class JaroWinklerSimilarity<T> implements Function<String, Map<T, Double>
 	 * @param saveCommonCharsQuery  Assigned characters of the query whose
 	 *                              predecessors are already outside of the matching
 	 *                              window.
-	 * @param assignedQuery         array of booleans stating which characters of
-	 *                              first string have been assigned (TRUE =
-	 *                              assigned)
-	 * @param assignedTerm          array of booleans stating which characters of
-	 *                              second string have been assigned (TRUE =
-	 *                              assigned)
-	 * @param commonCharsTerm       Assigned characters of the term.
-	 */
-	private static <R> void match(Trie<R> termTrie, double threshold, String query, int queryLength,
-			int termTargetLength, int windowSize, int minCommonCharacters, int minHalfTranspositions,
-			int maxCommonPrefixSize, int saveCommonCharsQuery, boolean[] assignedQuery, boolean[] assignedTerm,
-			char[] commonCharsTerm, Map<R, Double> results) {
-
-		if (termTrie.containsLength(termTargetLength)) {
-			// current branch contains string of target length
-
-			// get current position on term string
-			final int termCurrentNodeDepth = termTrie.depth();
-			final int termCurrentNodeLength = termTrie.keyLength();
-
-			// iterate new characters
-			for (int termCurrentLength = termCurrentNodeDepth
-					+ 1; termCurrentLength <= termCurrentNodeLength; termCurrentLength++) {
-				// get character at current position
-				final char currentTermChar = termTrie.symbol().charAt(termCurrentLength - 1 - termCurrentNodeDepth);
-
-				// get window on query string
-				/**
-				 * First character of query that can still become assigned.
-				 */
-				final int assignableQueryWindowLowerBoundIndex = Math.max(termCurrentLength - 1 - windowSize, 0);
-				/**
-				 * Last character of query that can still become assigned by the current
-				 * character of term.
-				 */
-				final int assignableQueryCurrentWindowUpperBoundIndex = Math.min(termCurrentLength + windowSize,
-						queryLength) - 1;
-
-				// update maxCommonPrefixSize
-				if (termCurrentLength <= maxCommonPrefixSize && query.charAt(termCurrentLength - 1) != currentTermChar)
-				// currently in the prefix and characters at current position
-				// do not match
-				{
-					// reduce maxCommonPrefixSize to current depth
-					maxCommonPrefixSize = termCurrentLength - 1;
-				}
+	 * @param state                 Scratch buffers of the traversal, which will be
+	 *                              restored before return.
+	 * @param collector             Receiver of the matching trie nodes, which also
+	 *                              provides the current threshold.
+	 */
+	private static <R> void match(Trie<R> termTrie, int queryLength, int windowSize,
+			int termTargetLengthsFrom, int termTargetLengthsTo, int minCommonCharacters, int minHalfTranspositions,
+			int maxCommonPrefixSize, int saveCommonCharsQuery, TraversalState state, ResultCollector<R> collector) {
 
-				// search matching char for current term char in window
-				for (int i = assignableQueryWindowLowerBoundIndex; i <= assignableQueryCurrentWindowUpperBoundIndex; i++) {
-					if (!assignedQuery[i] && query.charAt(i) == currentTermChar) {
-						// unassigned common character was found
+		// initialize frame of the parent of the start node
+		state.ensureFramesCapacity(2);
+		state.frameTermTargetLengthsFrom[0] = termTargetLengthsFrom;
+		state.frameTermTargetLengthsTo[0] = termTargetLengthsTo;
+		state.frameMinCommonCharacters[0] = minCommonCharacters;
+		state.frameMinHalfTranspositions[0] = minHalfTranspositions;
+		state.frameMaxCommonPrefixSize[0] = maxCommonPrefixSize;
+		state.frameSaveCommonCharsQuery[0] = saveCommonCharsQuery;
 
-						assignedQuery[i] = true;
-						assignedTerm[termCurrentLength - 1] = true;
-						commonCharsTerm[minCommonCharacters] = currentTermChar;
-						minCommonCharacters++;
-						break;
-					}
+		Trie<R> node = termTrie;
+		int level = 1;
+		for (;;) {
+			if (matchNode(node, level, queryLength, windowSize, state, collector)) {
+				// children have target lengths left
+				Trie<R> child = node.firstChild();
+				if (child != null) {
+					// descend to first child
+					state.ensureFramesCapacity(level + 2);
+					state.frameNodes[level] = node;
+					node = child;
+					level++;
+					continue;
+				}
+				unassign(node, state);
+			}
+			// proceed with next sibling or return to parent
+			for (;;) {
+				if (level == 1) {
+					// start node completed
+					return;
+				}
+				node = node.nextSibling();
+				if (node != null) {
+					break;
 				}
+				level--;
+				@SuppressWarnings("unchecked")
+				Trie<R> parent = (Trie<R>) state.frameNodes[level];
+				node = parent;
+				state.frameNodes[level] = null;
+				unassign(node, state);
+			}
+		}
+	}
+
+	/**
+	 * Processes the characters of a trie node, collects the trie node, if it
+	 * matches, and prepares the frame of the given level for the children of the
+	 * trie node. The values passed from the parent trie node are taken from the
+	 * frame of the previous level.
+	 * 
+	 * @param termTrie    Current node of the term trie to process.
+	 * @param level       Level of the current node below the start node of the
+	 *                    traversal, starting with {@code 1}.
+	 * @param queryLength Length of the query.
+	 * @param windowSize  Window size to search for common characters.
+	 * @param state       Scratch buffers of the traversal.
+	 * @param collector   Receiver of the matching trie nodes, which also provides
+	 *                    the current threshold.
+	 * @return {@code true}, if the children of the trie node have to be processed
+	 *         and the assignments of the trie node have been kept, otherwise
+	 *         {@code false}
+	 */
+	private static <R> boolean matchNode(Trie<R> termTrie, int level, int queryLength, int windowSize,
+			TraversalState state, ResultCollector<R> collector) {
+
+		// get values of parent
+		final int termTargetLengthsFrom = state.frameTermTargetLengthsFrom[level - 1];
+		final int termTargetLengthsTo = state.frameTermTargetLengthsTo[level - 1];
+		int minCommonCharacters = state.frameMinCommonCharacters[level - 1];
+		int minHalfTranspositions = state.frameMinHalfTranspositions[level - 1];
+		int maxCommonPrefixSize = state.frameMaxCommonPrefixSize[level - 1];
+		int saveCommonCharsQuery = state.frameSaveCommonCharsQuery[level - 1];
+
+		// get target lengths contained in current branch
+		int[] termTargetLengths = state.ensureTermTargetLengthsCapacity(
+				termTargetLengthsTo + termTargetLengthsTo - termTargetLengthsFrom);
+		int termTargetLengthsCount = 0;
+		for (int i = termTargetLengthsFrom; i < termTargetLengthsTo; i++) {
+			if (termTrie.containsLength(termTargetLengths[i])) {
+				termTargetLengths[termTargetLengthsTo + termTargetLengthsCount++] = termTargetLengths[i];
+			}
+		}
+
+		if (termTargetLengthsCount == 0) {
+			// current branch does not contain string of any target length
+			return false;
+		}
+
+		// get current position on term string
+		final int termCurrentNodeDepth = termTrie.depth();
+		final int termCurrentNodeLength = termTrie.keyLength();
+		state.processedCharacters += termCurrentNodeLength - termCurrentNodeDepth;
+
+		// get scratch buffers
+		final char[] query = state.query;
+		final int[] assignedTerm = state.assignedTerm;
+		final char[] commonCharsTerm = state.commonCharsTerm;
+
+		// iterate new characters
+		for (int termCurrentLength = termCurrentNodeDepth
+				+ 1; termCurrentLength <= termCurrentNodeLength; termCurrentLength++) {
+			// get character at current position
+			final char currentTermChar = termTrie.symbolChar(termCurrentLength - 1 - termCurrentNodeDepth);
+
+			// get window on query string
+			/**
+			 * First character of query that can still become assigned.
+			 */
+			final int assignableQueryWindowLowerBoundIndex = Math.max(termCurrentLength - 1 - windowSize, 0);
+			/**
+			 * Last character of query that can still become assigned by the current
+			 * character of term.
+			 */
+			final int assignableQueryCurrentWindowUpperBoundIndex = Math.min(termCurrentLength + windowSize,
+					queryLength) - 1;
 
-				// update minHalfTranspositions
-				if (windowSize < termCurrentLength && termCurrentLength - windowSize <= queryLength) {
-					// window lower bound inside of query string
-					if (assignedQuery[assignableQueryWindowLowerBoundIndex]) {
-						// character at window lower bound is assigned
-						if (query.charAt(
-								assignableQueryWindowLowerBoundIndex) != commonCharsTerm[saveCommonCharsQuery]) {
-							// common characters at last save position not equal
-							minHalfTranspositions++;
-						}
-						saveCommonCharsQuery++;
+			// update maxCommonPrefixSize
+			if (termCurrentLength <= maxCommonPrefixSize && query[termCurrentLength - 1] != currentTermChar)
+			// currently in the prefix and characters at current position
+			// do not match
+			{
+				// reduce maxCommonPrefixSize to current depth
+				maxCommonPrefixSize = termCurrentLength - 1;
+			}
+
+			// search matching char for current term char in window
+			int i = state.findUnassigned(currentTermChar, assignableQueryWindowLowerBoundIndex,
+					assignableQueryCurrentWindowUpperBoundIndex);
+			assignedTerm[termCurrentLength - 1] = i;
+			if (i >= 0) {
+				// unassigned common character was found
+
+				state.assign(i);
+				commonCharsTerm[minCommonCharacters] = currentTermChar;
+				minCommonCharacters++;
+			}
+
+			// update minHalfTranspositions
+			if (windowSize < termCurrentLength && termCurrentLength - windowSize <= queryLength) {
+				// window lower bound inside of query string
+				if (state.isAssigned(assignableQueryWindowLowerBoundIndex)) {
+					// character at window lower bound is assigned
+					if (query[assignableQueryWindowLowerBoundIndex] != commonCharsTerm[saveCommonCharsQuery]) {
+						// common characters at last save position not equal
+						minHalfTranspositions++;
 					}
+					saveCommonCharsQuery++;
 				}
 			}
+		}
+
+		// get window bounds
+		int assignableQueryWindowLowerBoundIndex = Math.max(termCurrentNodeLength - 1 - windowSize, 0);
+
+		// ignore query characters that are not contained in the remaining term
+		// characters of current branch
+		boolean restricted = state.restrict(termTrie.suffixSignature());
+
+		// iterate target lengths
+		int childTermTargetLengthsTo = termTargetLengthsTo;
+		termTargetLengths = state.termTargetLengths;
+		for (int i = termTargetLengthsTo; i < termTargetLengthsTo + termTargetLengthsCount; i++) {
+			int termTargetLength = termTargetLengths[i];
 
-			// get window bounds
-			int assignableQueryWindowLowerBoundIndex = Math.max(termCurrentNodeLength - 1 - windowSize, 0);
 			/**
 			 * Last character of query that can still become assigned by any character of
 			 * term.
 			 */
 			int assignableQueryTotalWindowUpperBoundIndex = Math.min(termTargetLength + windowSize, queryLength) - 1;
-			// get number of characters that can still become assigned
-			int assignableQuery = equalInRange(assignedQuery, false, assignableQueryWindowLowerBoundIndex,
-					assignableQueryTotalWindowUpperBoundIndex);
+			// get number of characters that can still become assigned by the remaining
+			// term characters in current branch
+			int assignableQuery = restricted
+					? state.countUnassignedEligible(assignableQueryWindowLowerBoundIndex,
+							assignableQueryTotalWindowUpperBoundIndex)
+					: state.countUnassigned(assignableQueryWindowLowerBoundIndex,
+							assignableQueryTotalWindowUpperBoundIndex);
 			/**
 			 * Number of characters of term that can still become assigned after processing
 			 * current character.
@@ -197,32 +442,31 @@ public class JaroWinklerSimilarity<T> implements Function<String, Map<T, Double>
 			double maxCommonCharacters = Math.min(assignableQuery, assignableTerm) + minCommonCharacters;
 
 			// get remaining half transpositions
+			int maxHalfTranspositions = minHalfTranspositions;
 			if (termCurrentNodeLength == termTargetLength) {
 				// termString has been completed
 
 				// iterate assignments not covered by minHalfTransposition yet
-				for (int i = Math.max(termCurrentNodeLength - windowSize,
-						0); i <= assignableQueryTotalWindowUpperBoundIndex; i++) {
-
-					if (assignedQuery[i]) {
-						// position is assigned
+				int saveCommonChars = saveCommonCharsQuery;
+				for (int j = state.nextAssigned(Math.max(termCurrentNodeLength - windowSize, 0),
+						assignableQueryTotalWindowUpperBoundIndex); j != -1; j = state.nextAssigned(j + 1,
+								assignableQueryTotalWindowUpperBoundIndex)) {
 
-						if (query.charAt(i) != commonCharsTerm[saveCommonCharsQuery]) {
-							// common characters at current position not equal
+					if (query[j] != commonCharsTerm[saveCommonChars]) {
+						// common characters at current position not equal
 
-							minHalfTranspositions++;
-						}
-						saveCommonCharsQuery++;
+						maxHalfTranspositions++;
 					}
+					saveCommonChars++;
 				}
 			}
 
 			// calculate max similarity
 			double maxSimilarity = jaroWinklerSimilarity(maxCommonCharacters, queryLength, termTargetLength,
-					minHalfTranspositions, maxCommonPrefixSize);
+					maxHalfTranspositions, Math.min(maxCommonPrefixSize, termTargetLength));
 
 			// check against threshold
-			if (maxSimilarity >= threshold) {
+			if (maxSimilarity >= collector.threshold) {
 				// threshold is meet
 				if (termTargetLength == termCurrentNodeLength) {
 					// current node has target depth
@@ -230,26 +474,41 @@ public class JaroWinklerSimilarity<T> implements Function<String, Map<T, Double>
 					if (termTrie.isPopulated()) {
 						// current node is contained
 						// add object of current node to results
-						results.merge(termTrie.value(), maxSimilarity, Math::max);
+						collector.collect(termTrie, maxSimilarity);
 					}
 				} else {
-					// iterate children
-					Iterator<? extends Trie<R>> children = termTrie.childrenIterator();
-					boolean[] termAssignedCopy = new boolean[termTargetLength];
-					boolean[] queryAssignedCopy = new boolean[queryLength];
-					while (children.hasNext()) {
-
-						System.arraycopy(assignedTerm, 0, termAssignedCopy, 0, termTargetLength);
-						System.arraycopy(assignedQuery, 0, queryAssignedCopy, 0, queryLength);
+					// keep target length for children
+					termTargetLengths[childTermTargetLengthsTo++] = termTargetLength;
+				}
+			}
+		}
 
-						Trie<R> child = children.next();
+		if (childTermTargetLengthsTo > termTargetLengthsTo) {
+			// pass values to children
+			state.frameTermTargetLengthsFrom[level] = termTargetLengthsTo;
+			state.frameTermTargetLengthsTo[level] = childTermTargetLengthsTo;
+			state.frameMinCommonCharacters[level] = minCommonCharacters;
+			state.frameMinHalfTranspositions[level] = minHalfTranspositions;
+			state.frameMaxCommonPrefixSize[level] = maxCommonPrefixSize;
+			state.frameSaveCommonCharsQuery[level] = saveCommonCharsQuery;
+			return true;
+		} else {
+			unassign(termTrie, state);
+			return false;
+		}
+	}
 
-						// traverse child
-						match(child, threshold, query, queryLength, termTargetLength, windowSize, minCommonCharacters,
-								minHalfTranspositions, maxCommonPrefixSize, saveCommonCharsQuery, queryAssignedCopy,
-								termAssignedCopy, commonCharsTerm, results);
-					}
-				}
+	/**
+	 * Undoes the assignments of the characters of a trie node.
+	 * 
+	 * @param termTrie trie node whose characters have been processed
+	 * @param state    Scratch buffers of the traversal.
+	 */
+	private static void unassign(Trie<?> termTrie, TraversalState state) {
+		final int[] assignedTerm = state.assignedTerm;
+		for (int termPosition = termTrie.depth(); termPosition < termTrie.keyLength(); termPosition++) {
+			if (assignedTerm[termPosition] >= 0) {
+				state.unassign(assignedTerm[termPosition]);
 			}
 		}
 	}
@@ -269,27 +528,73 @@ public class JaroWinklerSimilarity<T> implements Function<String, Map<T, Double>
 	 * @since 1.0
 	 */
 	public static Double of(String first, String second, double threshold) {
-		// initialize result
-		Map<String, Double> results = new HashMap<>();
-		// get lengths
-		int firstLength = first.length();
-		int secondLength = second.length();
-		// calculate window size for common characters
-		int windowSize = windowSize(secondLength, firstLength);
-		// max value of l = the size of the emphasized first few characters
-		int maxCommonPrefixSize = Math.min(COMMON_PREFIX_LENGTH_LIMIT, Math.min(secondLength, firstLength));
-		// recursive traverse of the trie to get matching strings of length2
-		match(Tries.singletonTrieSet(first), threshold, second, secondLength, firstLength, windowSize, 0 // minCommonCharacters
-				, 0 // minHalfTranspositions
-				, maxCommonPrefixSize, 0 // saveCommonCharsQuery
-				, new boolean[secondLength] // assignedQuery
-				, new boolean[firstLength] // assignedTerm
-				, new char[Math.min(secondLength, firstLength)] // commonCharsTerm
-				, results);
-		return results.get(first);
-	}
-
-	private static int windowSize(int length1, int length2) {
+		double similarity = score(first, second, threshold);
+		return similarity == BELOW_THRESHOLD ? null : similarity;
+	}
+
+	/**
+	 * Returns the Jaro Winkler similarity of two given {@link String}s as a
+	 * primitive value. In contrast to {@link #of(String, String, double)}, the
+	 * result is not boxed and the scratch buffers of the calculation are reused
+	 * by the current thread. The calculation stops as soon as the upper bound of
+	 * the similarity falls below the threshold.
+	 * 
+	 * @param first     First {@link String} to match.
+	 * @param second    Second {@link String} to match.
+	 * @param threshold Minimum similarity of the strings.
+	 * @return Jaro Winkler similarity of {@code first} and {@code second} or
+	 *         {@link #BELOW_THRESHOLD} if they do not meet the threshold.
+	 * 
+	 * @since 1.1.1
+	 */
+	public static double score(String first, String second, double threshold) {
+		return PairwiseSimilarity.of(first, second, threshold);
+	}
+
+	/**
+	 * Returns the Jaro Winkler similarity of two given {@link String}s as a
+	 * primitive value without any threshold.
+	 * 
+	 * @param first  First {@link String} to match.
+	 * @param second Second {@link String} to match.
+	 * @return Jaro Winkler similarity of {@code first} and {@code second}.
+	 * 
+	 * @see #score(String, String, double)
+	 * @since 1.1.1
+	 */
+	public static double score(String first, String second) {
+		return PairwiseSimilarity.of(first, second, Double.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * Calculates the Jaro Winkler similarity of a given {@link String} to each of
+	 * several candidate {@link String}s, e.g. the hits of another search system,
+	 * and writes them into the given array. The query is prepared only once for all
+	 * candidates and no buffers are allocated once the scratch buffers of the
+	 * current thread are large enough. The similarity of each candidate equals
+	 * {@code score(candidate, query, threshold)}.
+	 * 
+	 * @param query      {@link String} that will be compared to the candidates.
+	 * @param candidates {@link String}s that will be compared to the query.
+	 * @param threshold  Minimum similarity of the strings.
+	 * @param out        Array to receive the similarity of each candidate or
+	 *                   {@link #BELOW_THRESHOLD}, if the candidate does not meet
+	 *                   the threshold, at the position of the candidate.
+	 * @return number of candidates meeting the threshold
+	 * @throws IllegalArgumentException if {@code out} is shorter than
+	 *                                  {@code candidates}
+	 * 
+	 * @see #score(String, String, double)
+	 * @since 1.1.1
+	 */
+	public static int score(String query, String[] candidates, double threshold, double[] out) {
+		if (out.length < candidates.length) {
+			throw new IllegalArgumentException("Output array must not be shorter than the candidates array.");
+		}
+		return PairwiseSimilarity.of(query, candidates, threshold, out);
+	}
+
+	static int windowSize(int length1, int length2) {
 		return Math.max(0, Math.max(length1, length2) / 2 - 1);
 	}
 
@@ -331,13 +636,327 @@ public class JaroWinklerSimilarity<T> implements Function<String, Map<T, Double>
 		return new JaroWinklerSimilarity<T>(new TrieMap<T>(terms), defaultThreshold);
 	}
 
+	/**
+	 * Prepares a {@link JaroWinklerSimilarity} instance to match the content of a
+	 * given {@link Collection} considering a given threshold after normalization,
+	 * e.g. case folding or removal of diacritics. The terms are normalized once
+	 * at build time, but the original terms will be returned. Each query will be
+	 * normalized with the same normalizer before matching. If several terms are
+	 * equal after normalization, all of them will be returned.
+	 * 
+	 * @param terms            {@link Collection} of matched and returned terms.
+	 * @param defaultThreshold Default minimum similarity of matching terms.
+	 * @param normalizer       Normalization of terms and queries.
+	 * @return A {@link JaroWinklerSimilarity} instance to match the normalized
+	 *         content of the given {@link Collection} considering the given
+	 *         threshold.
+	 * 
+	 * @since 1.1.1
+	 */
+	public static JaroWinklerSimilarity<String> with(Collection<String> terms, double defaultThreshold,
+			Function<String, String> normalizer) {
+		Map<String, String> termMap = new HashMap<>();
+		for (String term : terms) {
+			termMap.put(term, term);
+		}
+		return with(termMap, defaultThreshold, normalizer);
+	}
+
+	/**
+	 * Prepares a {@link JaroWinklerSimilarity} instance to match the content of a
+	 * given {@link Map} considering a given threshold after normalization, e.g.
+	 * case folding or removal of diacritics. The matching will search for similar
+	 * normalized keys, but return the corresponding values. The keys are
+	 * normalized once at build time and only the normalized keys are stored. Each
+	 * query will be normalized with the same normalizer before matching. If
+	 * several keys are equal after normalization, the values of all of them will
+	 * be returned.
+	 * 
+	 * @param terms            {@link Map} of matched terms and returned values.
+	 * @param defaultThreshold Default minimum similarity of matching terms.
+	 * @param normalizer       Normalization of terms and queries.
+	 * @return A {@link JaroWinklerSimilarity} instance to match the normalized
+	 *         content of the given {@link Map} considering the given threshold.
+	 * 
+	 * @param <T> Type of the map values and returned values by the matching.
+	 * 
+	 * @since 1.1.1
+	 */
+	public static <T> JaroWinklerSimilarity<T> with(Map<String, T> terms, double defaultThreshold,
+			Function<String, String> normalizer) {
+		// values of several terms with equal normalized key are stored as
+		// MultipleValues and expanded by the ResultCollector
+		Map<String, Object> normalizedTerms = new HashMap<>();
+		for (Map.Entry<String, T> term : terms.entrySet()) {
+			String key = normalizer.apply(term.getKey());
+			if (normalizedTerms.containsKey(key)) {
+				normalizedTerms.put(key, addValue(normalizedTerms.get(key), term.getValue()));
+			} else {
+				normalizedTerms.put(key, term.getValue());
+			}
+		}
+		@SuppressWarnings("unchecked")
+		Map<String, T> castNormalizedTerms = (Map<String, T>) (Map<String, ?>) normalizedTerms;
+		return new JaroWinklerSimilarity<T>(new TrieMap<T>(castNormalizedTerms), defaultThreshold, normalizer);
+	}
+
+	/**
+	 * @param values single value or {@link ResultCollector.MultipleValues}
+	 * @param value  value to add
+	 * @return {@link ResultCollector.MultipleValues} containing the given values
+	 *         or the given values, if the value is already contained
+	 */
+	private static Object addValue(Object values, Object value) {
+		Object[] valueArray = values instanceof ResultCollector.MultipleValues
+				? ((ResultCollector.MultipleValues) values).values
+				: new Object[] { values };
+		for (Object containedValue : valueArray) {
+			if (Objects.equals(containedValue, value)) {
+				return values;
+			}
+		}
+		Object[] extendedValueArray = Arrays.copyOf(valueArray, valueArray.length + 1);
+		extendedValueArray[valueArray.length] = value;
+		return new ResultCollector.MultipleValues(extendedValueArray);
+	}
+
+	/**
+	 * {@link RecursiveTask} to match a query against a subtree of the term trie for
+	 * several target lengths of the terms sharing the same window size. The task
+	 * uses the thread confined {@link TraversalState} of its worker thread.
+	 */
+	private static class SubtreeMatchTask<T> extends RecursiveTask<Map<T, Double>> {
+
+		private static final long serialVersionUID = 1L;
+		private final Trie<T> subtree;
+		private final String query;
+		private final double threshold;
+		private final int windowSize;
+		private final int[] termTargetLengths;
+
+		SubtreeMatchTask(Trie<T> subtree, String query, double threshold, int windowSize, int[] termTargetLengths) {
+			this.subtree = subtree;
+			this.query = query;
+			this.threshold = threshold;
+			this.windowSize = windowSize;
+			this.termTargetLengths = termTargetLengths;
+		}
+
+		@Override
+		protected Map<T, Double> compute() {
+			Map<T, Double> results = new HashMap<>();
+			int queryLength = this.query.length();
+			int maxTermTargetLength = this.termTargetLengths[this.termTargetLengths.length - 1];
+			TraversalState state = TraversalState.acquire(queryLength, maxTermTargetLength);
+			try {
+				System.arraycopy(this.termTargetLengths, 0,
+						state.ensureTermTargetLengthsCapacity(this.termTargetLengths.length), 0,
+						this.termTargetLengths.length);
+				state.setQuery(this.query);
+				match(this.subtree, queryLength, this.windowSize //
+						, 0, this.termTargetLengths.length // termTargetLengths
+						, 0 // minCommonCharacters
+						, 0 // minHalfTranspositions
+						, Math.min(COMMON_PREFIX_LENGTH_LIMIT, queryLength) // maxCommonPrefixSize
+						, 0 // saveCommonCharsQuery
+						, state, new ResultCollector.MapCollector<T>(this.threshold, results));
+			} finally {
+				state.release();
+			}
+			return results;
+		}
+	}
+
+	/**
+	 * {@link RecursiveTask} to run several {@link SubtreeMatchTask}s and merge
+	 * their results.
+	 */
+	private static class MergeTask<T> extends RecursiveTask<Map<T, Double>> {
+
+		private static final long serialVersionUID = 1L;
+		private final List<SubtreeMatchTask<T>> tasks;
+
+		MergeTask(List<SubtreeMatchTask<T>> tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		protected Map<T, Double> compute() {
+			Map<T, Double> results = new HashMap<>();
+			for (SubtreeMatchTask<T> task : invokeAll(this.tasks)) {
+				Map<T, Double> taskResults = task.join();
+				if (taskResults.size() > results.size()) {
+					// merge smaller into larger map
+					Map<T, Double> swap = results;
+					results = taskResults;
+					taskResults = swap;
+				}
+				for (Map.Entry<T, Double> result : taskResults.entrySet()) {
+					results.merge(result.getKey(), result.getValue(), Math::max);
+				}
+			}
+			return results;
+		}
+	}
+
+	/**
+	 * {@link RecursiveAction} to match several terms of a
+	 * {@link JaroWinklerSimilarity} instance against the terms of the same
+	 * instance.
+	 */
+	private static class SelfJoinTask<T> extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final JaroWinklerSimilarity<T> similarity;
+		private final List<Trie<T>> terms;
+		private final double threshold;
+		private final SimilarityPairSink<? super T, ? super T> sink;
+		private final AtomicBoolean stopped;
+
+		SelfJoinTask(JaroWinklerSimilarity<T> similarity, List<Trie<T>> terms, double threshold,
+				SimilarityPairSink<? super T, ? super T> sink, AtomicBoolean stopped) {
+			this.similarity = similarity;
+			this.terms = terms;
+			this.threshold = threshold;
+			this.sink = sink;
+			this.stopped = stopped;
+		}
+
+		@Override
+		protected void compute() {
+			ResultCollector.SelfPairCollector<T> collector = new ResultCollector.SelfPairCollector<T>(this.threshold,
+					this.sink, this.stopped);
+			TraversalState state = TraversalState.acquire(0, 0);
+			try {
+				for (Trie<T> term : this.terms) {
+					if (this.stopped.get()) {
+						return;
+					}
+					collector.reset(term);
+					collector.collectTermPairs();
+					// only match terms of at least the same length
+					this.similarity.match(term.key(), term.keyLength(), collector, state);
+				}
+			} finally {
+				state.release();
+			}
+		}
+	}
+
+	/**
+	 * {@link RecursiveAction} to match several terms of another collection against
+	 * the terms of a {@link JaroWinklerSimilarity} instance.
+	 */
+	private static class JoinTask<L, T> extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final JaroWinklerSimilarity<T> similarity;
+		private final List<Map.Entry<String, L>> terms;
+		private final double threshold;
+		private final SimilarityPairSink<? super L, ? super T> sink;
+		private final AtomicBoolean stopped;
+
+		JoinTask(JaroWinklerSimilarity<T> similarity, List<Map.Entry<String, L>> terms, double threshold,
+				SimilarityPairSink<? super L, ? super T> sink, AtomicBoolean stopped) {
+			this.similarity = similarity;
+			this.terms = terms;
+			this.threshold = threshold;
+			this.sink = sink;
+			this.stopped = stopped;
+		}
+
+		@Override
+		protected void compute() {
+			ResultCollector.PairCollector<L, T> collector = new ResultCollector.PairCollector<L, T>(this.threshold,
+					this.sink, this.stopped);
+			TraversalState state = TraversalState.acquire(0, 0);
+			try {
+				for (Map.Entry<String, L> term : this.terms) {
+					if (this.stopped.get()) {
+						return;
+					}
+					collector.reset(term.getValue());
+					this.similarity.match(term.getKey(), 0, collector, state);
+				}
+			} finally {
+				state.release();
+			}
+		}
+	}
+
+	/**
+	 * Selected {@link Engine} together with the structures it requires. Instances
+	 * are immutable, such that a query sees a consistent state while the
+	 * {@link Engine} is changed concurrently.
+	 */
+	private static final class EngineSetup<T> {
+		final Engine engine;
+
+		/**
+		 * Columnar copy of the terms, if {@link Engine#SCAN}, {@link Engine#QGRAM}
+		 * or {@link Engine#AUTO} has been selected.
+		 */
+		final TermScan<T> scan;
+
+		/**
+		 * Inverted index of the characters of the terms, if {@link Engine#QGRAM} or
+		 * {@link Engine#AUTO} has been selected.
+		 */
+		final QGramIndex<T> qgrams;
+
+		/**
+		 * Estimation of the work of the engines, if {@link Engine#AUTO} has been
+		 * selected or a plan has been requested.
+		 */
+		final QueryPlanner planner;
+
+		EngineSetup(Engine engine, TermScan<T> scan, QGramIndex<T> qgrams, QueryPlanner planner) {
+			this.engine = engine;
+			this.scan = scan;
+			this.qgrams = qgrams;
+			this.planner = planner;
+		}
+	}
+
+	/**
+	 * Maximum number of terms matched by one {@link SelfJoinTask} or
+	 * {@link JoinTask}.
+	 */
+	private static final int JOIN_CHUNK_SIZE = 64;
+
 	private final Trie<T> trie;
 
 	private double defaultThreshold;
 
+	/**
+	 * Normalization applied to the terms at build time and to each query.
+	 */
+	private final Function<String, String> normalizer;
+
+	/**
+	 * {@code true}, if several terms might be equal after normalization and
+	 * therefore nodes might have {@link ResultCollector.MultipleValues}.
+	 */
+	private final boolean normalized;
+
+	/**
+	 * Selected {@link Engine}, which is replaced as a whole to publish it safely
+	 * to concurrent queries.
+	 */
+	private volatile EngineSetup<T> engineSetup = new EngineSetup<T>(Engine.TRIE, null, null, null);
+
 	private JaroWinklerSimilarity(Trie<T> trie, double defaultThreshold) {
 		this.trie = trie;
 		this.defaultThreshold = defaultThreshold;
+		this.normalizer = Function.identity();
+		this.normalized = false;
+	}
+
+	private JaroWinklerSimilarity(Trie<T> trie, double defaultThreshold, Function<String, String> normalizer) {
+		this.trie = trie;
+		this.defaultThreshold = defaultThreshold;
+		this.normalizer = normalizer;
+		this.normalized = true;
 	}
 
 	/**
@@ -354,26 +973,139 @@ public class JaroWinklerSimilarity<T> implements Function<String, Map<T, Double>
 	public Map<T, Double> apply(String query, double threshold) {
 		// initialize result
 		Map<T, Double> results = new HashMap<>();
+		match(query, new ResultCollector.MapCollector<T>(threshold, results));
+		return results;
+	}
+
+	/**
+	 * Matches a {@link String} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance and passes the matching trie nodes to
+	 * the given {@link ResultCollector}. Term lengths are processed in ascending
+	 * order, starting with all lengths up to the query length, which share the
+	 * window size of the query. Therefore, the most promising lengths are
+	 * processed first. The range of processed lengths follows the current
+	 * threshold of the {@link ResultCollector}.
+	 * 
+	 * @param query     {@link String} that will be compared to the terms to
+	 *                  calculate the similarity.
+	 * @param collector Receiver of the matching trie nodes, which also provides
+	 *                  the current threshold.
+	 */
+	private void match(String query, ResultCollector<T> collector) {
+		// get scratch buffers
+		TraversalState state = TraversalState.acquire(query.length(), 0);
+		try {
+			match(query, collector, state);
+		} finally {
+			state.release();
+		}
+	}
+
+	/**
+	 * Matches a {@link String} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance using the given scratch buffers.
+	 * 
+	 * @param query     {@link String} that will be compared to the terms to
+	 *                  calculate the similarity.
+	 * @param collector Receiver of the matching trie nodes, which also provides
+	 *                  the current threshold.
+	 * @param state     Scratch buffers of the traversal.
+	 * 
+	 * @see #match(String, ResultCollector)
+	 */
+	void match(String query, ResultCollector<T> collector, TraversalState state) {
+		match(this.normalizer.apply(query), 0, collector, state);
+	}
+
+	/**
+	 * Matches a {@link String} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance with a given minimum length using
+	 * the given scratch buffers. The {@link String} has to be normalized
+	 * before.
+	 * 
+	 * @param query          {@link String} that will be compared to the terms to
+	 *                       calculate the similarity.
+	 * @param fromTermLength Minimum length of the matched terms.
+	 * @param collector      Receiver of the matching trie nodes, which also
+	 *                       provides the current threshold.
+	 * @param state          Scratch buffers of the traversal.
+	 * @return work of the matching in processed term characters
+	 * 
+	 * @see #match(String, ResultCollector)
+	 */
+	private long match(String query, int fromTermLength, ResultCollector<T> collector, TraversalState state) {
+		EngineSetup<T> setup = this.engineSetup;
+		Engine engine = setup.engine;
+		if (engine == Engine.AUTO) {
+			engine = setup.planner.plan(query, collector.threshold, fromTermLength, Engine.AUTO, setup.qgrams)
+					.engine();
+		}
+		return match(query, fromTermLength, collector, state, setup, engine);
+	}
+
+	/**
+	 * Matches a {@link String} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance with a given minimum length using
+	 * the given {@link Engine} and scratch buffers. The {@link String} has to be
+	 * normalized before.
+	 * 
+	 * @param query          {@link String} that will be compared to the terms to
+	 *                       calculate the similarity.
+	 * @param fromTermLength Minimum length of the matched terms.
+	 * @param collector      Receiver of the matching trie nodes, which also
+	 *                       provides the current threshold.
+	 * @param state          Scratch buffers of the traversal.
+	 * @param setup          Structures of the selected {@link Engine}.
+	 * @param engine         {@link Engine#TRIE}, {@link Engine#SCAN} or
+	 *                       {@link Engine#QGRAM}
+	 * @return work of the matching in processed term characters
+	 */
+	private long match(String query, int fromTermLength, ResultCollector<T> collector, TraversalState state,
+			EngineSetup<T> setup, Engine engine) {
+		if (engine == Engine.SCAN) {
+			return setup.scan.match(query, fromTermLength, collector);
+		}
+		if (engine == Engine.QGRAM) {
+			return setup.qgrams.match(query, fromTermLength, collector);
+		}
 
 		// get length of query
 		int queryLength = query.length();
 
-		// iterate possible lengths of terms
-		for (Integer termTargetLength : this.trie.containedLengths()) {
+		// max value of l = the size of the emphasized first few characters
+		int maxCommonPrefixSize = Math.min(COMMON_PREFIX_LENGTH_LIMIT, queryLength);
+		state.setQuery(query);
+		// iterate possible lengths of terms in the range of term lengths that can meet
+		// the threshold
+		int termTargetLength = this.trie
+				.nextContainedLength(Math.max(fromTermLength, minTermLength(queryLength, collector.threshold)));
+		int maxTermLength = maxTermLength(queryLength, collector.threshold);
+		while (termTargetLength != -1 && termTargetLength <= maxTermLength) {
 			// calculate window size for common characters
 			int windowSize = windowSize(queryLength, termTargetLength);
-			// max value of l = the size of the emphasized first few characters
-			int maxCommonPrefixSize = Math.min(COMMON_PREFIX_LENGTH_LIMIT, Math.min(queryLength, termTargetLength));
-			// recursive traverse of the trie to get matching strings of length2
-			match(this.trie, threshold, query, queryLength, termTargetLength, windowSize, 0 // minCommonCharacters
+			// collect lengths of terms with equal window size
+			int termTargetLengthsCount = 0;
+			int maxTermTargetLength;
+			do {
+				state.ensureTermTargetLengthsCapacity(termTargetLengthsCount + 1);
+				state.termTargetLengths[termTargetLengthsCount++] = termTargetLength;
+				maxTermTargetLength = termTargetLength;
+				termTargetLength = this.trie.nextContainedLength(termTargetLength + 1);
+			} while (termTargetLength != -1 && termTargetLength <= maxTermLength
+					&& windowSize(queryLength, termTargetLength) == windowSize);
+			// ensure sufficient size of scratch buffers
+			state.ensureCapacity(queryLength, maxTermTargetLength);
+			// recursive traverse of the trie to get matching strings of the collected
+			// lengths
+			match(this.trie, queryLength, windowSize, 0, termTargetLengthsCount // termTargetLengths
+					, 0 // minCommonCharacters
 					, 0 // minHalfTranspositions
 					, maxCommonPrefixSize, 0 // saveCommonCharsQuery
-					, new boolean[queryLength] // assignedQuery
-					, new boolean[termTargetLength] // assignedTerm
-					, new char[Math.min(queryLength, termTargetLength)] // commonCharsTerm
-					, results);
+					, state, collector);
+			// update range of term lengths to the current threshold
+			maxTermLength = maxTermLength(queryLength, collector.threshold);
 		}
-		return results;
+		return state.processedCharacters;
 	}
 
 	/**
@@ -391,6 +1123,527 @@ public class JaroWinklerSimilarity<T> implements Function<String, Map<T, Double>
 		return apply(query, defaultThreshold);
 	}
 
+	/**
+	 * Checks whether any term of this {@link JaroWinklerSimilarity} instance meets
+	 * a given threshold for a given {@link String}. The matching stops at the first
+	 * matching term. If the {@link String} itself is a non empty term, no matching
+	 * is required at all. Otherwise, the terms with lengths up to the length of the
+	 * {@link String}, which are the most promising, are checked first.
+	 * 
+	 * @param query     {@link String} that will be compared to the terms to
+	 *                  calculate the similarity.
+	 * @param threshold Minimum similarity of matching terms.
+	 * @return {@code true}, if any term meets the threshold, otherwise
+	 *         {@code false}
+	 * 
+	 * @since 1.1.1
+	 */
+	public boolean anyMatch(String query, double threshold) {
+		String normalizedQuery = this.normalizer.apply(query);
+		if (threshold <= 1 && !normalizedQuery.isEmpty() && contains(normalizedQuery)) {
+			// exact match, except of empty strings, which have no similarity
+			return true;
+		}
+		ResultCollector.AnyCollector<T> collector = new ResultCollector.AnyCollector<T>(threshold);
+		match(query, collector);
+		return collector.found;
+	}
+
+	/**
+	 * Counts the terms of this {@link JaroWinklerSimilarity} instance that meet a
+	 * given threshold for a given {@link String}. In contrast to
+	 * {@link #apply(String, double)}, the values of the matching terms are neither
+	 * retrieved nor collected.
+	 * <p>
+	 * <b>Note:</b> If several matching terms have the same value, each term is
+	 * counted. Therefore, the count might be larger than the size of the result of
+	 * {@link #apply(String, double)}. Terms that are equal after normalization
+	 * are counted separately.
+	 * 
+	 * @param query     {@link String} that will be compared to the terms to
+	 *                  calculate the similarity.
+	 * @param threshold Minimum similarity of matching terms.
+	 * @return number of matching terms
+	 * 
+	 * @since 1.1.1
+	 */
+	public int count(String query, double threshold) {
+		ResultCollector.CountCollector<T> collector = new ResultCollector.CountCollector<T>(threshold, this.normalized);
+		match(query, collector);
+		return collector.count;
+	}
+
+	/**
+	 * @param term {@link String} to search
+	 * @return {@code true}, if the given {@link String} is a term of this
+	 *         {@link JaroWinklerSimilarity} instance, otherwise {@code false}
+	 */
+	private boolean contains(String term) {
+		Trie<T> node = this.trie;
+		if (!node.symbolRegionMatches(term, node.depth(), node.symbolLength())) {
+			return false;
+		}
+		while (node.keyLength() < term.length()) {
+			// find child containing the next characters
+			Trie<T> child = node.firstChild();
+			while (child != null
+					&& (child.symbolLength() == 0 || child.symbolChar(0) != term.charAt(child.depth()))) {
+				child = child.nextSibling();
+			}
+			if (child == null || !child.symbolRegionMatches(term, child.depth(), child.symbolLength())) {
+				return false;
+			}
+			node = child;
+		}
+		return node.keyLength() == term.length() && node.isPopulated();
+	}
+
+	/**
+	 * Matches a {@link String} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance, considering a given threshold, and
+	 * passes each match to the given {@link SimilaritySink} as soon as it has been
+	 * found. No intermediate result {@link Map} is created. The
+	 * {@link SimilaritySink} may stop the matching by returning {@code false}.
+	 * <p>
+	 * <b>Note:</b> If several matching terms have the same value, the value is
+	 * passed once for each term. Use
+	 * {@link #apply(String, double, SimilaritySink, boolean)} to pass each value
+	 * only once with its maximum similarity.
+	 * 
+	 * @param query     {@link String} that will be compared to the terms to
+	 *                  calculate the similarity.
+	 * @param threshold Minimum similarity of matching terms.
+	 * @param sink      Receiver of the matching values and their similarity.
+	 * @return {@code true}, if all matches have been passed, or {@code false}, if
+	 *         the {@link SimilaritySink} stopped the matching
+	 * 
+	 * @since 1.1.1
+	 */
+	public boolean apply(String query, double threshold, SimilaritySink<? super T> sink) {
+		ResultCollector.SinkCollector<T> collector = new ResultCollector.SinkCollector<T>(threshold, sink);
+		match(query, collector);
+		return !collector.stopped;
+	}
+
+	/**
+	 * Matches a {@link String} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance, considering a given threshold, and
+	 * passes the matches to the given {@link SimilaritySink}. The
+	 * {@link SimilaritySink} may stop the matching by returning {@code false}.
+	 * 
+	 * @param query       {@link String} that will be compared to the terms to
+	 *                    calculate the similarity.
+	 * @param threshold   Minimum similarity of matching terms.
+	 * @param sink        Receiver of the matching values and their similarity.
+	 * @param deduplicate If {@code true}, the matches are collected first to pass
+	 *                    each value only once with the maximum similarity of its
+	 *                    matching terms. Otherwise, the matches are passed as soon
+	 *                    as they have been found.
+	 * @return {@code true}, if all matches have been passed, or {@code false}, if
+	 *         the {@link SimilaritySink} stopped the matching
+	 * 
+	 * @see #apply(String, double, SimilaritySink)
+	 * @since 1.1.1
+	 */
+	public boolean apply(String query, double threshold, SimilaritySink<? super T> sink, boolean deduplicate) {
+		if (deduplicate) {
+			for (Map.Entry<T, Double> result : apply(query, threshold).entrySet()) {
+				if (!sink.accept(result.getKey(), result.getValue())) {
+					return false;
+				}
+			}
+			return true;
+		} else {
+			return apply(query, threshold, sink);
+		}
+	}
+
+	/**
+	 * Matches a {@link String} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance, considering a given threshold, and
+	 * fills the given {@link SimilarityResults}. Previous content of the
+	 * {@link SimilarityResults} will be removed. Reusing the same
+	 * {@link SimilarityResults} for several queries avoids the allocation of a
+	 * result {@link Map} per query.
+	 * 
+	 * @param query     {@link String} that will be compared to the terms to
+	 *                  calculate the similarity.
+	 * @param threshold Minimum similarity of matching terms.
+	 * @param results   {@link SimilarityResults} to fill with the matching values
+	 *                  and their similarity.
+	 * 
+	 * @since 1.1.1
+	 */
+	public void apply(String query, double threshold, SimilarityResults<? super T> results) {
+		results.clear();
+		match(query, new ResultCollector.SinkCollector<T>(threshold, results));
+	}
+
+	/**
+	 * Matches a {@link String} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance, considering a given threshold, using
+	 * several threads of the given {@link ForkJoinPool}. The work is split by
+	 * groups of term lengths and by the top level subtrees of the terms. This
+	 * reduces the latency of single expensive queries, e.g. with low thresholds,
+	 * on large sets of terms.
+	 * 
+	 * @param query     {@link String} that will be compared to the terms to
+	 *                  calculate the similarity.
+	 * @param threshold Minimum similarity of matching terms.
+	 * @param pool      {@link ForkJoinPool} to run the matching.
+	 * @return {@link Map} of the matching values and their ranking.
+	 * 
+	 * @since 1.1.1
+	 */
+	public Map<T, Double> applyParallel(String query, double threshold, ForkJoinPool pool) {
+		List<SubtreeMatchTask<T>> tasks = new ArrayList<>();
+
+		query = this.normalizer.apply(query);
+
+		// get length of query
+		int queryLength = query.length();
+
+		// iterate possible lengths of terms in the range of term lengths that can meet
+		// the threshold
+		int maxTermLength = maxTermLength(queryLength, threshold);
+		int termTargetLength = this.trie.nextContainedLength(minTermLength(queryLength, threshold));
+		while (termTargetLength != -1 && termTargetLength <= maxTermLength) {
+			// calculate window size for common characters
+			int windowSize = windowSize(queryLength, termTargetLength);
+			// collect lengths of terms with equal window size
+			List<Integer> termTargetLengths = new ArrayList<>();
+			do {
+				termTargetLengths.add(termTargetLength);
+				termTargetLength = this.trie.nextContainedLength(termTargetLength + 1);
+			} while (termTargetLength != -1 && termTargetLength <= maxTermLength
+					&& windowSize(queryLength, termTargetLength) == windowSize);
+
+			if (this.trie.keyLength() == 0 && this.trie.firstChild() != null) {
+				// root does not process any characters
+				if (termTargetLengths.get(0) == 0) {
+					// root might match on its own
+					tasks.add(new SubtreeMatchTask<T>(this.trie, query, threshold, windowSize, new int[] { 0 }));
+					termTargetLengths.remove(0);
+				}
+				if (!termTargetLengths.isEmpty()) {
+					// split by top level subtrees
+					int[] childTermTargetLengths = termTargetLengths.stream().mapToInt(Integer::intValue).toArray();
+					for (Trie<T> child = this.trie.firstChild(); child != null; child = child.nextSibling()) {
+						tasks.add(new SubtreeMatchTask<T>(child, query, threshold, windowSize, childTermTargetLengths));
+					}
+				}
+			} else {
+				tasks.add(new SubtreeMatchTask<T>(this.trie, query, threshold, windowSize,
+						termTargetLengths.stream().mapToInt(Integer::intValue).toArray()));
+			}
+		}
+		return pool.invoke(new MergeTask<T>(tasks));
+	}
+
+	/**
+	 * Matches a {@link String} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance, considering a given threshold, using
+	 * several threads of the {@link ForkJoinPool#commonPool()}.
+	 * 
+	 * @param query     {@link String} that will be compared to the terms to
+	 *                  calculate the similarity.
+	 * @param threshold Minimum similarity of matching terms.
+	 * @return {@link Map} of the matching values and their ranking.
+	 * 
+	 * @see #applyParallel(String, double, ForkJoinPool)
+	 * @since 1.1.1
+	 */
+	public Map<T, Double> applyParallel(String query, double threshold) {
+		return applyParallel(query, threshold, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Matches the terms of this {@link JaroWinklerSimilarity} instance against
+	 * each other, considering a given threshold, using several threads of the
+	 * given {@link ForkJoinPool}. Each unordered pair of different terms meeting
+	 * the threshold is passed once to the given {@link SimilarityPairSink} as soon
+	 * as it has been found. As the Jaro Winkler similarity is symmetric, each term
+	 * is only matched against terms of at least its own length. The work is
+	 * partitioned by the length of the terms.
+	 * <p>
+	 * <b>Note:</b> The {@link SimilarityPairSink} will be called concurrently by
+	 * several threads and therefore must be thread safe.
+	 * 
+	 * @param threshold Minimum similarity of matching pairs of terms.
+	 * @param sink      Receiver of the values of the matching pairs of terms and
+	 *                  their similarity.
+	 * @param pool      {@link ForkJoinPool} to run the matching.
+	 * @return {@code true}, if all matching pairs have been passed, or
+	 *         {@code false}, if the {@link SimilarityPairSink} stopped the
+	 *         matching
+	 * 
+	 * @since 1.1.1
+	 */
+	public boolean selfJoin(double threshold, SimilarityPairSink<? super T, ? super T> sink, ForkJoinPool pool) {
+		// partition terms by length
+		List<List<Trie<T>>> termsByLength = new ArrayList<>();
+		for (Iterator<? extends Trie<T>> iterator = this.trie.populatedNodeIterator(); iterator.hasNext();) {
+			Trie<T> term = iterator.next();
+			while (termsByLength.size() <= term.keyLength()) {
+				termsByLength.add(new ArrayList<>());
+			}
+			termsByLength.get(term.keyLength()).add(term);
+		}
+
+		// split partitions into tasks
+		AtomicBoolean stopped = new AtomicBoolean();
+		List<SelfJoinTask<T>> tasks = new ArrayList<>();
+		for (List<Trie<T>> terms : termsByLength) {
+			for (int from = 0; from < terms.size(); from += JOIN_CHUNK_SIZE) {
+				tasks.add(new SelfJoinTask<T>(this, terms.subList(from, Math.min(from + JOIN_CHUNK_SIZE, terms.size())),
+						threshold, sink, stopped));
+			}
+		}
+		pool.invoke(new RecursiveAction() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		return !stopped.get();
+	}
+
+	/**
+	 * Matches the terms of this {@link JaroWinklerSimilarity} instance against
+	 * each other, considering a given threshold, using several threads of the
+	 * {@link ForkJoinPool#commonPool()}.
+	 * 
+	 * @param threshold Minimum similarity of matching pairs of terms.
+	 * @param sink      Receiver of the values of the matching pairs of terms and
+	 *                  their similarity.
+	 * @return {@code true}, if all matching pairs have been passed, or
+	 *         {@code false}, if the {@link SimilarityPairSink} stopped the
+	 *         matching
+	 * 
+	 * @see #selfJoin(double, SimilarityPairSink, ForkJoinPool)
+	 * @since 1.1.1
+	 */
+	public boolean selfJoin(double threshold, SimilarityPairSink<? super T, ? super T> sink) {
+		return selfJoin(threshold, sink, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Matches the keys of a {@link Map} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance, considering a given threshold, using
+	 * several threads of the given {@link ForkJoinPool}. Each pair of a value of
+	 * the {@link Map} and a value of this instance whose terms meet the threshold
+	 * is passed to the given {@link SimilarityPairSink} as soon as it has been
+	 * found. The work is partitioned by the length of the keys of the {@link Map}.
+	 * Partitions without any term of a compatible length in this instance are
+	 * skipped. Use {@link SimilarityPairSink#writer(Appendable)} to spill the
+	 * pairs into a file.
+	 * <p>
+	 * <b>Note:</b> The {@link SimilarityPairSink} will be called concurrently by
+	 * several threads and therefore must be thread safe.
+	 * 
+	 * @param left      {@link Map} of matched keys and returned values.
+	 * @param threshold Minimum similarity of matching pairs of terms.
+	 * @param sink      Receiver of the values of the matching pairs of terms and
+	 *                  their similarity.
+	 * @param pool      {@link ForkJoinPool} to run the matching.
+	 * @param <L>       Type of the values of the {@link Map}.
+	 * @return {@code true}, if all matching pairs have been passed, or
+	 *         {@code false}, if the {@link SimilarityPairSink} stopped the
+	 *         matching
+	 * 
+	 * @since 1.1.1
+	 */
+	public <L> boolean join(Map<String, L> left, double threshold, SimilarityPairSink<? super L, ? super T> sink,
+			ForkJoinPool pool) {
+		// partition normalized terms by length
+		List<List<Map.Entry<String, L>>> termsByLength = new ArrayList<>();
+		for (Map.Entry<String, L> term : left.entrySet()) {
+			String key = this.normalizer.apply(term.getKey());
+			while (termsByLength.size() <= key.length()) {
+				termsByLength.add(new ArrayList<>());
+			}
+			termsByLength.get(key.length()).add(new AbstractMap.SimpleImmutableEntry<>(key, term.getValue()));
+		}
+
+		// split partitions into tasks
+		AtomicBoolean stopped = new AtomicBoolean();
+		List<JoinTask<L, T>> tasks = new ArrayList<>();
+		for (int length = 0; length < termsByLength.size(); length++) {
+			List<Map.Entry<String, L>> terms = termsByLength.get(length);
+			int firstTermLength = this.trie.nextContainedLength(minTermLength(length, threshold));
+			if (terms.isEmpty() || firstTermLength == -1 || firstTermLength > maxTermLength(length, threshold)) {
+				// no terms of compatible length
+				continue;
+			}
+			// sort terms to process terms with common prefix consecutively
+			terms.sort(Map.Entry.comparingByKey());
+			for (int from = 0; from < terms.size(); from += JOIN_CHUNK_SIZE) {
+				tasks.add(new JoinTask<L, T>(this, terms.subList(from, Math.min(from + JOIN_CHUNK_SIZE, terms.size())),
+						threshold, sink, stopped));
+			}
+		}
+		pool.invoke(new RecursiveAction() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		return !stopped.get();
+	}
+
+	/**
+	 * Matches the keys of a {@link Map} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance, considering a given threshold, using
+	 * several threads of the {@link ForkJoinPool#commonPool()}.
+	 * 
+	 * @param left      {@link Map} of matched keys and returned values.
+	 * @param threshold Minimum similarity of matching pairs of terms.
+	 * @param sink      Receiver of the values of the matching pairs of terms and
+	 *                  their similarity.
+	 * @param <L>       Type of the values of the {@link Map}.
+	 * @return {@code true}, if all matching pairs have been passed, or
+	 *         {@code false}, if the {@link SimilarityPairSink} stopped the
+	 *         matching
+	 * 
+	 * @see #join(Map, double, SimilarityPairSink, ForkJoinPool)
+	 * @since 1.1.1
+	 */
+	public <L> boolean join(Map<String, L> left, double threshold, SimilarityPairSink<? super L, ? super T> sink) {
+		return join(left, threshold, sink, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Matches the content of a {@link Collection} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance, considering a given threshold, using
+	 * several threads of the {@link ForkJoinPool#commonPool()}. Duplicates in the
+	 * {@link Collection} are matched only once.
+	 * 
+	 * @param left      {@link Collection} of matched and returned terms.
+	 * @param threshold Minimum similarity of matching pairs of terms.
+	 * @param sink      Receiver of the values of the matching pairs of terms and
+	 *                  their similarity.
+	 * @return {@code true}, if all matching pairs have been passed, or
+	 *         {@code false}, if the {@link SimilarityPairSink} stopped the
+	 *         matching
+	 * 
+	 * @see #join(Map, double, SimilarityPairSink, ForkJoinPool)
+	 * @since 1.1.1
+	 */
+	public boolean join(Collection<String> left, double threshold,
+			SimilarityPairSink<? super String, ? super T> sink) {
+		Map<String, String> terms = new HashMap<>();
+		for (String term : left) {
+			terms.put(term, term);
+		}
+		return join(terms, threshold, sink, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Matches several {@link String}s against the terms of this
+	 * {@link JaroWinklerSimilarity} instance, considering a given threshold. The
+	 * queries are deduplicated and processed ordered by length, reusing the
+	 * scratch buffers of the traversal for all queries. This is faster than
+	 * calling {@link #apply(String, double)} for each query.
+	 * 
+	 * @param queries   {@link Collection} of {@link String}s that will be compared
+	 *                  to the terms to calculate the similarity.
+	 * @param threshold Minimum similarity of matching terms.
+	 * @return {@link Map} of the queries and the {@link Map}s of their matching
+	 *         values and their ranking.
+	 * 
+	 * @since 1.1.1
+	 */
+	public Map<String, Map<T, Double>> applyAll(Collection<String> queries, double threshold) {
+		// deduplicate and sort queries by length
+		List<String> sortedQueries = new ArrayList<String>(new HashSet<String>(queries));
+		sortedQueries.sort(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+
+		// initialize result
+		Map<String, Map<T, Double>> results = new HashMap<>(sortedQueries.size() * 4 / 3 + 1);
+		if (sortedQueries.isEmpty()) {
+			return results;
+		}
+
+		// get scratch buffers of sufficient size for all queries
+		TraversalState state = TraversalState.acquire(sortedQueries.get(sortedQueries.size() - 1).length(), 0);
+		try {
+			for (String query : sortedQueries) {
+				Map<T, Double> queryResults = new HashMap<>();
+				match(query, new ResultCollector.MapCollector<T>(threshold, queryResults), state);
+				results.put(query, queryResults);
+			}
+		} finally {
+			state.release();
+		}
+		return results;
+	}
+
+	/**
+	 * Matches several {@link String}s against the terms of this
+	 * {@link JaroWinklerSimilarity} instance using the default threshold.
+	 * 
+	 * @param queries {@link Collection} of {@link String}s that will be compared to
+	 *                the terms to calculate the similarity.
+	 * @return {@link Map} of the queries and the {@link Map}s of their matching
+	 *         values and their ranking.
+	 * 
+	 * @see #applyAll(Collection, double)
+	 * @since 1.1.1
+	 */
+	public Map<String, Map<T, Double>> applyAll(Collection<String> queries) {
+		return applyAll(queries, defaultThreshold);
+	}
+
+	/**
+	 * Matches a {@link String} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance and returns the {@code k} values with
+	 * the highest similarity, considering a given minimum threshold. As soon as
+	 * {@code k} values have been found, the threshold used to prune the search is
+	 * raised to the lowest similarity of them. Therefore, this is much faster than
+	 * {@link #apply(String, double)} with a low threshold. Values with equal
+	 * similarity to the {@code k}-th value may be omitted.
+	 * 
+	 * @param query        {@link String} that will be compared to the terms to
+	 *                     calculate the similarity.
+	 * @param k            Maximum number of returned values.
+	 * @param minThreshold Minimum similarity of matching terms.
+	 * @return {@link Map} of the at most {@code k} best matching values and their
+	 *         ranking, ordered by descending similarity.
+	 * @throws IllegalArgumentException if {@code k} is not positive
+	 * 
+	 * @since 1.1.1
+	 */
+	public Map<T, Double> topK(String query, int k, double minThreshold) {
+		ResultCollector.TopCollector<T> collector = new ResultCollector.TopCollector<T>(k, minThreshold);
+		match(query, collector);
+		return collector.results();
+	}
+
+	/**
+	 * Matches a {@link String} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance and returns the {@code k} values with
+	 * the highest similarity, using the default threshold as minimum threshold.
+	 * 
+	 * @param query {@link String} that will be compared to the terms to calculate
+	 *              the similarity.
+	 * @param k     Maximum number of returned values.
+	 * @return {@link Map} of the at most {@code k} best matching values and their
+	 *         ranking, ordered by descending similarity.
+	 * @throws IllegalArgumentException if {@code k} is not positive
+	 * 
+	 * @see #topK(String, int, double)
+	 * @since 1.1.1
+	 */
+	public Map<T, Double> topK(String query, int k) {
+		return topK(query, k, defaultThreshold);
+	}
+
 	/**
 	 * Changes the default threshold.
 	 * 
@@ -399,4 +1652,108 @@ public class JaroWinklerSimilarity<T> implements Function<String, Map<T, Double>
 	public void setThreshold(double defaultThreshold) {
 		this.defaultThreshold = defaultThreshold;
 	}
+
+	/**
+	 * @return Default minimum similarity of matching terms.
+	 */
+	double defaultThreshold() {
+		return this.defaultThreshold;
+	}
+
+	/**
+	 * Changes the strategy to match queries against the terms. The strategy is
+	 * used by all matching methods except of
+	 * {@link #applyParallel(String, double, ForkJoinPool)}, which always
+	 * traverses the term trie. Selecting {@link Engine#SCAN} the first time
+	 * creates a columnar copy of the terms. Selecting {@link Engine#QGRAM} the
+	 * first time additionally creates an inverted index of the characters of the
+	 * terms. Selecting {@link Engine#AUTO} creates both. Queries that run
+	 * concurrently keep using the previously selected strategy.
+	 * 
+	 * @param engine Strategy to match queries against the terms.
+	 * 
+	 * @since 1.1.1
+	 */
+	public synchronized void setEngine(Engine engine) {
+		Objects.requireNonNull(engine);
+		EngineSetup<T> setup = this.engineSetup;
+		TermScan<T> scan = setup.scan;
+		if (engine != Engine.TRIE && scan == null) {
+			scan = new TermScan<T>(this.trie);
+		}
+		QGramIndex<T> qgrams = setup.qgrams;
+		if ((engine == Engine.QGRAM || engine == Engine.AUTO) && qgrams == null) {
+			qgrams = new QGramIndex<T>(scan);
+		}
+		QueryPlanner planner = setup.planner;
+		if (engine == Engine.AUTO && planner == null) {
+			planner = new QueryPlanner(this.trie);
+		}
+		this.engineSetup = new EngineSetup<T>(engine, scan, qgrams, planner);
+	}
+
+	/**
+	 * @return Strategy to match queries against the terms.
+	 */
+	Engine engine() {
+		return this.engineSetup.engine;
+	}
+
+	/**
+	 * @return Selected {@link Engine} with the estimation of the work of the
+	 *         engines, which is created on first use.
+	 */
+	private synchronized EngineSetup<T> plannedEngineSetup() {
+		EngineSetup<T> setup = this.engineSetup;
+		if (setup.planner == null) {
+			setup = new EngineSetup<T>(setup.engine, setup.scan, setup.qgrams, new QueryPlanner(this.trie));
+			this.engineSetup = setup;
+		}
+		return setup;
+	}
+
+	/**
+	 * Estimates the work of each {@link Engine} to match a {@link String} against
+	 * the terms of this {@link JaroWinklerSimilarity} instance, considering a
+	 * given threshold, without matching it. The chosen {@link Engine} of the
+	 * returned {@link QueryPlan} is the cheapest one, if {@link Engine#AUTO} has
+	 * been selected, or otherwise the selected {@link Engine}.
+	 * 
+	 * @param query     {@link String} that would be compared to the terms.
+	 * @param threshold Minimum similarity of matching terms.
+	 * @return {@link QueryPlan} of the matching
+	 * 
+	 * @see #setEngine(Engine)
+	 * @since 1.1.1
+	 */
+	public QueryPlan plan(String query, double threshold) {
+		EngineSetup<T> setup = this.plannedEngineSetup();
+		return setup.planner.plan(this.normalizer.apply(query), threshold, 0, setup.engine, setup.qgrams);
+	}
+
+	/**
+	 * Matches a {@link String} against the terms of this
+	 * {@link JaroWinklerSimilarity} instance, considering a given threshold,
+	 * according to the {@link QueryPlan} returned by
+	 * {@link #plan(String, double)} and returns the {@link QueryPlan} completed by
+	 * the actual work. The matches are counted, but not returned.
+	 * 
+	 * @param query     {@link String} that will be compared to the terms.
+	 * @param threshold Minimum similarity of matching terms.
+	 * @return executed {@link QueryPlan} of the matching
+	 * 
+	 * @since 1.1.1
+	 */
+	public QueryPlan explain(String query, double threshold) {
+		query = this.normalizer.apply(query);
+		EngineSetup<T> setup = this.plannedEngineSetup();
+		QueryPlan plan = setup.planner.plan(query, threshold, 0, setup.engine, setup.qgrams);
+		TraversalState state = TraversalState.acquire(query.length(), 0);
+		try {
+			return plan.executed(this.match(query, 0,
+					new ResultCollector.CountCollector<T>(threshold, this.normalized), state, setup, plan.engine()));
+		} finally {
+			state.release();
+		}
+	}
 }
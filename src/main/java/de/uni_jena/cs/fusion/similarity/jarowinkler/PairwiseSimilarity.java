@@ -0,0 +1,487 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Calculates the Jaro Winkler similarity of single pairs of strings without the
+ * trie traversal of {@link JaroWinklerSimilarity}. The calculation is bit
+ * parallel: the positions of each character of the query are recorded as
+ * bitmaps, so that the common characters in the window of a term character are
+ * found by a few bitwise operations instead of a scan of the window. Queries of
+ * up to 64 characters are processed in a single word, longer queries in blocks
+ * of 64 characters. The buffers are cached per thread, so that a pair does not
+ * allocate any buffers once the buffers of the current thread are large
+ * enough. The results are equal to the results of the trie traversal. A
+ * prepared query can be matched against many terms, e.g. the terms of a
+ * {@link TermScan}.
+ *
+ * @since 1.1.1
+ */
+final class PairwiseSimilarity {
+
+	private static final ThreadLocal<PairwiseSimilarity> CACHE = ThreadLocal.withInitial(PairwiseSimilarity::new);
+
+	/**
+	 * Characters of the current query.
+	 */
+	private char[] query = new char[0];
+
+	/**
+	 * Length of the current query.
+	 */
+	private int queryLength = 0;
+
+	/**
+	 * Number of words of the current query.
+	 */
+	private int queryWords = 0;
+
+	/**
+	 * Slot of each Latin-1 character of the current query in
+	 * {@link #queryOccurrences} (slot + 1, 0 = not contained).
+	 */
+	private final int[] queryLatin1Slots = new int[256];
+
+	/**
+	 * Characters outside of Latin-1 of the current query in the order of their
+	 * slots, following the slots of the Latin-1 characters.
+	 */
+	private char[] queryNonLatin1Characters = new char[0];
+
+	/**
+	 * Number of characters outside of Latin-1 of the current query.
+	 */
+	private int queryNonLatin1Count = 0;
+
+	/**
+	 * Slot of the first character outside of Latin-1 of the current query.
+	 */
+	private int queryNonLatin1SlotOffset = 0;
+
+	/**
+	 * Positions of each character of the current query packed into words of 64
+	 * bits (1 = character at position), consecutively for each slot.
+	 */
+	private long[] queryOccurrences = new long[0];
+
+	/**
+	 * Assigned characters of the query packed into words of 64 bits (1 =
+	 * assigned), if the query has more than one word.
+	 */
+	private long[] assignedQuery = new long[0];
+
+	/**
+	 * Assigned characters of the term in term order.
+	 */
+	private char[] commonCharsTerm = new char[0];
+
+	/**
+	 * Characters of the current term, if the term is a {@link String}.
+	 */
+	private char[] term = new char[0];
+
+	/**
+	 * Number of term characters processed since the last call of
+	 * {@link #acquire(String)}, as a measure of the work of the calculation.
+	 */
+	long processedCharacters = 0;
+
+	private boolean inUse = false;
+
+	private PairwiseSimilarity() {
+	}
+
+	/**
+	 * Returns a {@link PairwiseSimilarity} for exclusive use by the current thread
+	 * prepared for the given query. Must be returned with {@link #release()} after
+	 * use. If the cached instance of the current thread is already in use (e.g.
+	 * due to a nested query), a new instance is returned.
+	 * 
+	 * @param query the query
+	 * @return prepared {@link PairwiseSimilarity}
+	 */
+	static PairwiseSimilarity acquire(String query) {
+		PairwiseSimilarity similarity = CACHE.get();
+		if (similarity.inUse) {
+			similarity = new PairwiseSimilarity();
+		}
+		similarity.inUse = true;
+		similarity.processedCharacters = 0;
+		similarity.setQuery(query);
+		return similarity;
+	}
+
+	/**
+	 * Returns this {@link PairwiseSimilarity} to the cache of the current thread.
+	 */
+	void release() {
+		this.inUse = false;
+	}
+
+	/**
+	 * Returns the Jaro Winkler similarity of a term and a query, if it meets the
+	 * threshold. The calculation stops as soon as the upper bound of the
+	 * similarity falls below the threshold.
+	 * 
+	 * @param term      the term
+	 * @param query     the query
+	 * @param threshold minimum similarity
+	 * @return Jaro Winkler similarity of {@code term} and {@code query} or
+	 *         {@link JaroWinklerSimilarity#BELOW_THRESHOLD}, if they do not meet
+	 *         the threshold
+	 */
+	static double of(String term, String query, double threshold) {
+		if (JaroWinklerSimilarity.maxSimilarity(query.length(), term.length()) < threshold) {
+			// lengths do not meet the threshold
+			return JaroWinklerSimilarity.BELOW_THRESHOLD;
+		}
+		PairwiseSimilarity similarity = acquire(query);
+		try {
+			return similarity.match(term, threshold);
+		} finally {
+			similarity.release();
+		}
+	}
+
+	/**
+	 * Calculates the Jaro Winkler similarity of several terms and a query. The
+	 * query is indexed only once for all terms.
+	 * 
+	 * @param query       the query
+	 * @param terms       the terms
+	 * @param threshold   minimum similarity
+	 * @param similarities receiver of the Jaro Winkler similarity of each term and
+	 *                     {@code query} or
+	 *                     {@link JaroWinklerSimilarity#BELOW_THRESHOLD}, if they
+	 *                     do not meet the threshold, at the position of the term
+	 * @return number of terms meeting the threshold
+	 */
+	static int of(String query, String[] terms, double threshold, double[] similarities) {
+		int queryLength = query.length();
+		PairwiseSimilarity similarity = acquire(query);
+		try {
+			int count = 0;
+			for (int i = 0; i < terms.length; i++) {
+				if (JaroWinklerSimilarity.maxSimilarity(queryLength, terms[i].length()) < threshold) {
+					// lengths do not meet the threshold
+					similarities[i] = JaroWinklerSimilarity.BELOW_THRESHOLD;
+				} else {
+					similarities[i] = similarity.match(terms[i], threshold);
+					if (similarities[i] != JaroWinklerSimilarity.BELOW_THRESHOLD) {
+						count++;
+					}
+				}
+			}
+			return count;
+		} finally {
+			similarity.release();
+		}
+	}
+
+	/**
+	 * Sets the current query and records the positions of each character of the
+	 * query.
+	 * 
+	 * @param query the query
+	 */
+	private void setQuery(String query) {
+		// reset slots of the previous query
+		for (int i = 0; i < this.queryLength; i++) {
+			if (this.query[i] <= 0xFF) {
+				this.queryLatin1Slots[this.query[i]] = 0;
+			}
+		}
+		this.queryNonLatin1Count = 0;
+
+		int queryLength = query.length();
+		if (this.query.length < queryLength) {
+			this.query = new char[queryLength];
+		}
+		query.getChars(0, queryLength, this.query, 0);
+		this.queryLength = queryLength;
+		this.queryWords = TraversalState.words(queryLength);
+
+		// assign slots to the characters
+		int latin1Count = 0;
+		for (int i = 0; i < queryLength; i++) {
+			char character = this.query[i];
+			if (character <= 0xFF) {
+				if (this.queryLatin1Slots[character] == 0) {
+					this.queryLatin1Slots[character] = ++latin1Count;
+				}
+			} else if (this.nonLatin1Slot(character) < 0) {
+				if (this.queryNonLatin1Characters.length == this.queryNonLatin1Count) {
+					this.queryNonLatin1Characters = Arrays.copyOf(this.queryNonLatin1Characters,
+							Math.max(8, this.queryNonLatin1Count * 2));
+				}
+				this.queryNonLatin1Characters[this.queryNonLatin1Count++] = character;
+			}
+		}
+		this.queryNonLatin1SlotOffset = latin1Count;
+
+		// record positions of the characters
+		int occurrencesLength = (latin1Count + this.queryNonLatin1Count) * this.queryWords;
+		if (this.queryOccurrences.length < occurrencesLength) {
+			this.queryOccurrences = new long[occurrencesLength];
+		} else {
+			Arrays.fill(this.queryOccurrences, 0, occurrencesLength, 0L);
+		}
+		for (int i = 0; i < queryLength; i++) {
+			this.queryOccurrences[this.slot(this.query[i]) * this.queryWords + (i >>> 6)] |= 1L << i;
+		}
+		if (this.assignedQuery.length < this.queryWords) {
+			this.assignedQuery = new long[this.queryWords];
+		}
+	}
+
+	/**
+	 * @param character the character
+	 * @return slot of the character in {@link #queryOccurrences} or {@code -1}, if
+	 *         the current query does not contain the character
+	 */
+	private int slot(char character) {
+		if (character <= 0xFF) {
+			return this.queryLatin1Slots[character] - 1;
+		} else {
+			int nonLatin1Slot = this.nonLatin1Slot(character);
+			return nonLatin1Slot < 0 ? -1 : this.queryNonLatin1SlotOffset + nonLatin1Slot;
+		}
+	}
+
+	/**
+	 * @param character a character outside of Latin-1
+	 * @return index of the character in {@link #queryNonLatin1Characters} or
+	 *         {@code -1}, if the current query does not contain the character
+	 */
+	private int nonLatin1Slot(char character) {
+		for (int i = 0; i < this.queryNonLatin1Count; i++) {
+			if (this.queryNonLatin1Characters[i] == character) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the Jaro Winkler similarity of a term and the current query, if it
+	 * meets the threshold.
+	 * 
+	 * @param term      the term
+	 * @param threshold minimum similarity
+	 * @return Jaro Winkler similarity of {@code term} and the current query or
+	 *         {@link JaroWinklerSimilarity#BELOW_THRESHOLD}, if they do not meet
+	 *         the threshold
+	 */
+	private double match(String term, double threshold) {
+		int termLength = term.length();
+		if (this.term.length < termLength) {
+			this.term = new char[termLength];
+		}
+		term.getChars(0, termLength, this.term, 0);
+		return this.match(this.term, 0, termLength, threshold);
+	}
+
+	/**
+	 * Returns the Jaro Winkler similarity of a term and the current query, if it
+	 * meets the threshold.
+	 * 
+	 * @param term       array containing the term
+	 * @param termOffset position of the first character of the term in
+	 *                   {@code term}
+	 * @param termLength length of the term
+	 * @param threshold  minimum similarity
+	 * @return Jaro Winkler similarity of the term and the current query or
+	 *         {@link JaroWinklerSimilarity#BELOW_THRESHOLD}, if they do not meet
+	 *         the threshold
+	 */
+	double match(char[] term, int termOffset, int termLength, double threshold) {
+		int queryLength = this.queryLength;
+		int windowSize = JaroWinklerSimilarity.windowSize(queryLength, termLength);
+		int maxCommonPrefixSize = Math.min(JaroWinklerSimilarity.COMMON_PREFIX_LENGTH_LIMIT,
+				Math.min(queryLength, termLength));
+		boolean bounded = threshold > 0;
+
+		// get scratch buffers
+		final char[] query = this.query;
+		if (this.commonCharsTerm.length < Math.min(queryLength, termLength)) {
+			this.commonCharsTerm = new char[Math.min(queryLength, termLength)];
+		}
+		final char[] commonCharsTerm = this.commonCharsTerm;
+
+		int commonCharacters = 0;
+		int halfTranspositions = 0;
+		if (this.queryWords <= 1) {
+			// single word
+			long assignedQuery = 0L;
+			int i = 0;
+			for (; i < termLength; i++) {
+				char termChar = term[termOffset + i];
+
+				// update maxCommonPrefixSize
+				if (i < maxCommonPrefixSize && query[i] != termChar) {
+					maxCommonPrefixSize = i;
+				}
+
+				// get window on query string
+				int lowerBound = i - windowSize;
+				if (lowerBound >= queryLength) {
+					// no further common characters
+					break;
+				}
+				int upperBound = Math.min(i + windowSize, queryLength - 1);
+
+				// assign first matching not assigned char in window
+				int slot = this.slot(termChar);
+				if (slot >= 0) {
+					long candidates = this.queryOccurrences[slot] & ~assignedQuery & -1L << Math.max(lowerBound, 0)
+							& -1L >>> -(upperBound + 1);
+					if (candidates != 0) {
+						assignedQuery |= candidates & -candidates;
+						commonCharsTerm[commonCharacters++] = termChar;
+					}
+				}
+
+				// check upper bound of the similarity against threshold
+				if (bounded) {
+					int notAssignable = lowerBound <= 0 ? 0
+							: Long.bitCount(~assignedQuery & -1L >>> -lowerBound);
+					if (!meetsThreshold(commonCharacters, queryLength - commonCharacters - notAssignable,
+							termLength - i - 1, queryLength, termLength, maxCommonPrefixSize, threshold)) {
+						this.processedCharacters += i + 1;
+						return JaroWinklerSimilarity.BELOW_THRESHOLD;
+					}
+				}
+			}
+
+			this.processedCharacters += i;
+
+			// count half transpositions
+			int k = 0;
+			for (long assigned = assignedQuery; assigned != 0; assigned &= assigned - 1) {
+				if (query[Long.numberOfTrailingZeros(assigned)] != commonCharsTerm[k++]) {
+					halfTranspositions++;
+				}
+			}
+		} else {
+			// blocks of words
+			final long[] assignedQuery = this.assignedQuery;
+			Arrays.fill(assignedQuery, 0, this.queryWords, 0L);
+			int notAssignable = 0;
+			int i = 0;
+			for (; i < termLength; i++) {
+				char termChar = term[termOffset + i];
+
+				// update maxCommonPrefixSize
+				if (i < maxCommonPrefixSize && query[i] != termChar) {
+					maxCommonPrefixSize = i;
+				}
+
+				// get window on query string
+				int lowerBound = i - windowSize;
+				if (lowerBound >= queryLength) {
+					// no further common characters
+					break;
+				}
+				int upperBound = Math.min(i + windowSize, queryLength - 1);
+
+				// assign first matching not assigned char in window
+				int slot = this.slot(termChar);
+				if (slot >= 0) {
+					int offset = slot * this.queryWords;
+					int word = Math.max(lowerBound, 0) >>> 6;
+					int upperWord = upperBound >>> 6;
+					long candidates = this.queryOccurrences[offset + word] & ~assignedQuery[word]
+							& -1L << Math.max(lowerBound, 0);
+					for (;;) {
+						if (word == upperWord) {
+							candidates &= -1L >>> -(upperBound + 1);
+						}
+						if (candidates != 0) {
+							assignedQuery[word] |= candidates & -candidates;
+							commonCharsTerm[commonCharacters++] = termChar;
+							break;
+						}
+						if (++word > upperWord) {
+							break;
+						}
+						candidates = this.queryOccurrences[offset + word] & ~assignedQuery[word];
+					}
+				}
+
+				// check upper bound of the similarity against threshold
+				if (bounded) {
+					// count query character that left the window without assignment
+					int left = lowerBound - 1;
+					if (left >= 0 && (assignedQuery[left >>> 6] & 1L << left) == 0) {
+						notAssignable++;
+					}
+					if (!meetsThreshold(commonCharacters, queryLength - commonCharacters - notAssignable,
+							termLength - i - 1, queryLength, termLength, maxCommonPrefixSize, threshold)) {
+						this.processedCharacters += i + 1;
+						return JaroWinklerSimilarity.BELOW_THRESHOLD;
+					}
+				}
+			}
+
+			this.processedCharacters += i;
+
+			// count half transpositions
+			int k = 0;
+			for (int word = 0; word < this.queryWords; word++) {
+				for (long assigned = assignedQuery[word]; assigned != 0; assigned &= assigned - 1) {
+					if (query[word << 6 | Long.numberOfTrailingZeros(assigned)] != commonCharsTerm[k++]) {
+						halfTranspositions++;
+					}
+				}
+			}
+		}
+
+		double similarity = JaroWinklerSimilarity.jaroWinklerSimilarity(commonCharacters, queryLength, termLength,
+				halfTranspositions, maxCommonPrefixSize);
+		return similarity >= threshold ? similarity : JaroWinklerSimilarity.BELOW_THRESHOLD;
+	}
+
+	/**
+	 * Checks the upper bound of the similarity, assuming that the remaining
+	 * characters become common characters as far as possible without
+	 * transpositions.
+	 * 
+	 * @param commonCharacters    number of common characters found so far
+	 * @param assignableQuery     number of query characters that can still become
+	 *                            assigned
+	 * @param assignableTerm      number of term characters that can still become
+	 *                            assigned
+	 * @param queryLength         length of the query
+	 * @param termLength          length of the term
+	 * @param maxCommonPrefixSize max size of the common prefix
+	 * @param threshold           minimum similarity
+	 * @return {@code true}, if the upper bound meets the threshold, otherwise
+	 *         {@code false}
+	 */
+	private static boolean meetsThreshold(int commonCharacters, int assignableQuery, int assignableTerm,
+			int queryLength, int termLength, int maxCommonPrefixSize, double threshold) {
+		return JaroWinklerSimilarity.jaroWinklerSimilarity(
+				commonCharacters + Math.min(assignableQuery, assignableTerm), queryLength, termLength, 0,
+				maxCommonPrefixSize) >= threshold;
+	}
+}
@@ -0,0 +1,338 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inverted index of the characters of the terms of a {@link TermScan}, used to
+ * generate candidates for a query before verifying them with the bit parallel
+ * {@link PairwiseSimilarity} kernel. The grams of a string are its characters,
+ * each one numbered by its occurrence in the string, such that the number of
+ * grams shared by two strings is the size of the intersection of their
+ * character multisets. As each common character of a term and a query needs an
+ * equal character in both strings, this size limits the number of common
+ * characters and therefore the similarity of the term. Terms sharing fewer
+ * grams with the query than required to meet the threshold are dropped without
+ * looking at their characters (count filtering).
+ * <p>
+ * Grams of two or more consecutive characters are not suitable, as common
+ * characters only need to be within the match window and may be transposed.
+ * For example, {@code abcdefgh} and {@code badcfehg} have a similarity of 0.83
+ * without any common bigram.
+ * 
+ * @param <T> Type of the values of the terms
+ *
+ * @since 1.1.1
+ */
+final class QGramIndex<T> {
+
+	private final TermScan<T> scan;
+
+	/**
+	 * Sorted keys of the grams (see {@link #gram(char, int)}).
+	 */
+	private final long[] grams;
+
+	/**
+	 * Position of the first posting of each gram in {@link #postings}, followed by
+	 * the number of postings.
+	 */
+	private final int[] gramStarts;
+
+	/**
+	 * Ascending indices of the terms in the {@link TermScan} containing each gram.
+	 */
+	private final int[] postings;
+
+	/**
+	 * Scratch buffers of a query, which are cached per thread and shared by all
+	 * {@link QGramIndex} instances, like the {@link TraversalState}.
+	 */
+	private static final class Scratch {
+
+		private static final ThreadLocal<Scratch> CACHE = ThreadLocal.withInitial(Scratch::new);
+
+		/**
+		 * Characters of the current query in sorted order.
+		 */
+		char[] sortedQuery = new char[0];
+
+		/**
+		 * Number of shared grams of each term, which are zero between queries.
+		 */
+		int[] counts = new int[0];
+
+		/**
+		 * Indices of the terms sharing enough grams with the current query.
+		 */
+		int[] candidates = new int[16];
+
+		private boolean inUse = false;
+
+		/**
+		 * Returns the {@link Scratch} of the current thread for exclusive use
+		 * prepared for the given query and number of terms. Must be returned with
+		 * {@link #release()} after use. If the cached instance of the current thread
+		 * is already in use (e.g. due to a nested query), a new instance is returned.
+		 * 
+		 * @param query normalized query
+		 * @param terms number of terms of the {@link QGramIndex}
+		 * @return prepared {@link Scratch}
+		 */
+		static Scratch acquire(String query, int terms) {
+			Scratch scratch = CACHE.get();
+			if (scratch.inUse) {
+				scratch = new Scratch();
+			}
+			scratch.inUse = true;
+			if (scratch.sortedQuery.length < query.length()) {
+				scratch.sortedQuery = new char[query.length()];
+			}
+			query.getChars(0, query.length(), scratch.sortedQuery, 0);
+			Arrays.sort(scratch.sortedQuery, 0, query.length());
+			if (scratch.counts.length < terms) {
+				scratch.counts = new int[terms];
+			}
+			return scratch;
+		}
+
+		/**
+		 * Returns this {@link Scratch} to the cache of the current thread.
+		 */
+		void release() {
+			this.inUse = false;
+		}
+	}
+
+	/**
+	 * Creates an inverted index of the characters of the terms of the given
+	 * {@link TermScan}.
+	 * 
+	 * @param scan {@link TermScan} containing the terms
+	 */
+	QGramIndex(TermScan<T> scan) {
+		this.scan = scan;
+
+		// number the grams and count their postings
+		Map<Long, int[]> gramCounts = new HashMap<>();
+		char[] term = new char[Math.max(scan.lengthStarts.length - 2, 0)];
+		for (int i = 0; i < scan.size(); i++) {
+			int length = term(scan, i, term);
+			for (int j = 0; j < length; j++) {
+				gramCounts.computeIfAbsent(gram(term, j), key -> new int[1])[0]++;
+			}
+		}
+		this.grams = new long[gramCounts.size()];
+		int gramCount = 0;
+		for (Long gram : gramCounts.keySet()) {
+			this.grams[gramCount++] = gram;
+		}
+		Arrays.sort(this.grams);
+		this.gramStarts = new int[this.grams.length + 1];
+		for (int i = 0; i < this.grams.length; i++) {
+			this.gramStarts[i + 1] = this.gramStarts[i] + gramCounts.get(this.grams[i])[0];
+		}
+
+		// fill postings in order of the terms
+		int[] next = Arrays.copyOf(this.gramStarts, this.grams.length);
+		this.postings = new int[this.gramStarts[this.grams.length]];
+		for (int i = 0; i < scan.size(); i++) {
+			int length = term(scan, i, term);
+			for (int j = 0; j < length; j++) {
+				this.postings[next[Arrays.binarySearch(this.grams, gram(term, j))]++] = i;
+			}
+		}
+	}
+
+	/**
+	 * Copies the characters of a term of the given {@link TermScan} in sorted
+	 * order, such that equal characters are adjacent.
+	 * 
+	 * @param scan   {@link TermScan} containing the term
+	 * @param index  index of the term
+	 * @param buffer destination of the characters
+	 * @return length of the term
+	 */
+	private static int term(TermScan<?> scan, int index, char[] buffer) {
+		int length = scan.offsets[index + 1] - scan.offsets[index];
+		System.arraycopy(scan.characters, scan.offsets[index], buffer, 0, length);
+		Arrays.sort(buffer, 0, length);
+		return length;
+	}
+
+	/**
+	 * @param sortedCharacters characters of a string in sorted order
+	 * @param position         position of a character
+	 * @return key of the gram of the character at the given position
+	 */
+	private static long gram(char[] sortedCharacters, int position) {
+		int occurrence = 1;
+		while (occurrence <= position && sortedCharacters[position - occurrence] == sortedCharacters[position]) {
+			occurrence++;
+		}
+		return gram(sortedCharacters[position], occurrence);
+	}
+
+	/**
+	 * @param character  a character
+	 * @param occurrence number of the occurrence of the character, starting with
+	 *                   one
+	 * @return key of the gram of the given occurrence of the given character
+	 */
+	private static long gram(char character, int occurrence) {
+		return (long) occurrence << Character.SIZE | character;
+	}
+
+	/**
+	 * @param gram  index of a gram
+	 * @param index index of a term
+	 * @return position of the first posting of the given gram not below the given
+	 *         term index
+	 */
+	private int lowerBound(int gram, int index) {
+		int lowerBound = this.gramStarts[gram];
+		int upperBound = this.gramStarts[gram + 1];
+		while (lowerBound < upperBound) {
+			int position = (lowerBound + upperBound) >>> 1;
+			if (this.postings[position] < index) {
+				lowerBound = position + 1;
+			} else {
+				upperBound = position;
+			}
+		}
+		return lowerBound;
+	}
+
+	/**
+	 * Returns the number of postings of the grams of a query for the terms of the
+	 * given lengths, which are processed to match the query against these terms.
+	 * 
+	 * @param query      normalized query
+	 * @param fromLength minimum length of the terms
+	 * @param toLength   maximum length of the terms
+	 * @return number of postings
+	 */
+	long postings(String query, int fromLength, int toLength) {
+		fromLength = Math.max(fromLength, 0);
+		toLength = Math.min(toLength, this.scan.lengthStarts.length - 2);
+		if (fromLength > toLength) {
+			return 0;
+		}
+		Scratch scratch = Scratch.acquire(query, 0);
+		try {
+			long postings = 0;
+			for (int i = 0; i < query.length(); i++) {
+				int gram = Arrays.binarySearch(this.grams, gram(scratch.sortedQuery, i));
+				if (gram >= 0) {
+					postings += this.lowerBound(gram, this.scan.lengthStarts[toLength + 1])
+							- this.lowerBound(gram, this.scan.lengthStarts[fromLength]);
+				}
+			}
+			return postings;
+		} finally {
+			scratch.release();
+		}
+	}
+
+	/**
+	 * Matches a query against the terms of the given minimum length and passes
+	 * the matching trie nodes to the given {@link ResultCollector}. Lengths are
+	 * processed in ascending order. The candidates are generated for the initial
+	 * threshold of the {@link ResultCollector} and verified for its current
+	 * threshold.
+	 * 
+	 * @param query          normalized query
+	 * @param fromTermLength Minimum length of the matched terms.
+	 * @param collector      Receiver of the matching trie nodes, which also
+	 *                       provides the current threshold.
+	 * @return number of processed postings and verified term characters, as a
+	 *         measure of the work of the match
+	 */
+	long match(String query, int fromTermLength, ResultCollector<T> collector) {
+		int queryLength = query.length();
+		double threshold = collector.threshold;
+		int fromLength = Math.max(fromTermLength, JaroWinklerSimilarity.minTermLength(queryLength, threshold));
+		int toLength = Math.min(this.scan.lengthStarts.length - 2,
+				JaroWinklerSimilarity.maxTermLength(queryLength, threshold));
+		if (fromLength > toLength) {
+			return 0;
+		}
+		int from = this.scan.lengthStarts[fromLength];
+		int to = this.scan.lengthStarts[toLength + 1];
+
+		Scratch scratch = Scratch.acquire(query, this.scan.size());
+		try {
+			// count shared grams of the terms
+			long work = 0;
+			int[] counts = scratch.counts;
+			for (int i = 0; i < queryLength; i++) {
+				int gram = Arrays.binarySearch(this.grams, gram(scratch.sortedQuery, i));
+				if (gram >= 0) {
+					int start = this.lowerBound(gram, from);
+					int end = this.lowerBound(gram, to);
+					for (int j = start; j < end; j++) {
+						counts[this.postings[j]]++;
+					}
+					work += end - start;
+				}
+			}
+
+			// select candidates sharing enough grams
+			int candidateCount = 0;
+			for (int length = fromLength; length <= toLength; length++) {
+				int minCommonCharacters = QueryPlanner.minCommonCharacters(queryLength, length, threshold,
+						Math.min(JaroWinklerSimilarity.COMMON_PREFIX_LENGTH_LIMIT, Math.min(queryLength, length)));
+				for (int i = this.scan.lengthStarts[length]; i < this.scan.lengthStarts[length + 1]; i++) {
+					if (counts[i] >= minCommonCharacters) {
+						if (candidateCount == scratch.candidates.length) {
+							scratch.candidates = Arrays.copyOf(scratch.candidates, candidateCount * 2);
+						}
+						scratch.candidates[candidateCount++] = i;
+					}
+					counts[i] = 0;
+				}
+			}
+
+			// verify candidates
+			PairwiseSimilarity similarity = PairwiseSimilarity.acquire(query);
+			try {
+				for (int i = 0; i < candidateCount; i++) {
+					int index = scratch.candidates[i];
+					int length = this.scan.offsets[index + 1] - this.scan.offsets[index];
+					if (JaroWinklerSimilarity.maxSimilarity(queryLength, length) >= collector.threshold) {
+						double termSimilarity = similarity.match(this.scan.characters, this.scan.offsets[index],
+								length, collector.threshold);
+						if (termSimilarity != JaroWinklerSimilarity.BELOW_THRESHOLD) {
+							collector.collect(this.scan.nodes[index], termSimilarity);
+						}
+					}
+				}
+				return work + similarity.processedCharacters;
+			} finally {
+				similarity.release();
+			}
+		} finally {
+			scratch.release();
+		}
+	}
+}
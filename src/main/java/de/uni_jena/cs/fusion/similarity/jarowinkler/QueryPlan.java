@@ -0,0 +1,114 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import de.uni_jena.cs.fusion.similarity.jarowinkler.JaroWinklerSimilarity.Engine;
+
+/**
+ * Plan of the matching of a query by a {@link JaroWinklerSimilarity} instance,
+ * consisting of the chosen {@link Engine} and the estimated work of each
+ * {@link Engine}. The work is measured in processed term characters and, for
+ * {@link Engine#QGRAM}, processed postings of the index. A plan
+ * returned by {@link JaroWinklerSimilarity#explain(String, double)} also
+ * provides the actual work of the chosen {@link Engine}, which allows to
+ * check the estimates.
+ *
+ * @see JaroWinklerSimilarity#plan(String, double)
+ * @see JaroWinklerSimilarity#explain(String, double)
+ * @since 1.1.1
+ */
+public final class QueryPlan {
+
+	private final Engine engine;
+	private final long estimatedTrieWork;
+	private final long estimatedScanWork;
+	private final long estimatedQGramWork;
+	private final long actualWork;
+
+	QueryPlan(Engine engine, long estimatedTrieWork, long estimatedScanWork, long estimatedQGramWork) {
+		this(engine, estimatedTrieWork, estimatedScanWork, estimatedQGramWork, -1);
+	}
+
+	private QueryPlan(Engine engine, long estimatedTrieWork, long estimatedScanWork, long estimatedQGramWork,
+			long actualWork) {
+		this.engine = engine;
+		this.estimatedTrieWork = estimatedTrieWork;
+		this.estimatedScanWork = estimatedScanWork;
+		this.estimatedQGramWork = estimatedQGramWork;
+		this.actualWork = actualWork;
+	}
+
+	/**
+	 * @param actualWork actual work of the chosen {@link Engine}
+	 * @return copy of this {@link QueryPlan} with the given actual work
+	 */
+	QueryPlan executed(long actualWork) {
+		return new QueryPlan(this.engine, this.estimatedTrieWork, this.estimatedScanWork, this.estimatedQGramWork,
+				actualWork);
+	}
+
+	/**
+	 * @return the chosen {@link Engine}, which is never {@link Engine#AUTO}
+	 */
+	public Engine engine() {
+		return this.engine;
+	}
+
+	/**
+	 * @return estimated work of the chosen {@link Engine}
+	 */
+	public long estimatedWork() {
+		return this.estimatedWork(this.engine);
+	}
+
+	/**
+	 * @param engine an {@link Engine} other than {@link Engine#AUTO}
+	 * @return estimated work of the given {@link Engine} or {@code -1}, if the
+	 *         index of {@link Engine#QGRAM} has not been created
+	 * @throws IllegalArgumentException if {@code engine} is {@link Engine#AUTO}
+	 */
+	public long estimatedWork(Engine engine) {
+		switch (engine) {
+		case TRIE:
+			return this.estimatedTrieWork;
+		case SCAN:
+			return this.estimatedScanWork;
+		case QGRAM:
+			return this.estimatedQGramWork;
+		default:
+			throw new IllegalArgumentException("No estimate for engine " + engine + ".");
+		}
+	}
+
+	/**
+	 * @return actual work of the chosen {@link Engine} or {@code -1}, if the plan
+	 *         has not been executed
+	 */
+	public long actualWork() {
+		return this.actualWork;
+	}
+
+	@Override
+	public String toString() {
+		return "QueryPlan [engine=" + this.engine + ", estimatedTrieWork=" + this.estimatedTrieWork
+				+ ", estimatedScanWork=" + this.estimatedScanWork + ", estimatedQGramWork=" + this.estimatedQGramWork
+				+ ", actualWork=" + this.actualWork + "]";
+	}
+}
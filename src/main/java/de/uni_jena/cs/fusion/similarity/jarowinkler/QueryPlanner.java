@@ -0,0 +1,356 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import de.uni_jena.cs.fusion.similarity.jarowinkler.JaroWinklerSimilarity.Engine;
+
+/**
+ * Chooses the {@link Engine} to match a query by the estimated work of each
+ * {@link Engine}. The work is measured in processed term characters and
+ * estimated from the query length, the threshold, the number of terms of each
+ * length and the structure of the term trie.
+ * <p>
+ * Both engines stop processing a term as soon as the upper bound of the
+ * similarity falls below the threshold. For each term length, the upper bound
+ * allows a certain number of characters without a common character, which
+ * rises with the common prefix of the term and the query. The rate of such
+ * misses is estimated from the share of the term characters contained in the
+ * query. This gives the number of processed characters per term, its reach.
+ * The number of terms with each common prefix is taken from the term trie. A
+ * scan processes the reach of each term of the lengths that can meet the
+ * threshold. A traversal of the term trie processes each trie node starting
+ * within the reach completely. Therefore, it processes each character of a
+ * prefix shared by several terms only once, but the whole remaining term as
+ * soon as the term is not shared anymore, and at a higher cost per character.
+ * A {@link QGramIndex} processes the postings of the characters of the query
+ * and verifies the terms sharing enough characters with the query like a
+ * scan. The share of these terms is estimated from the average number of
+ * shared characters, which is given by the number of postings.
+ *
+ * @since 1.1.1
+ */
+final class QueryPlanner {
+
+	/**
+	 * Assumed share of the term characters contained in the query that have a
+	 * common character in the query.
+	 */
+	static final double HIT_RATE = 0.8;
+
+	/**
+	 * Relative cost of processing a character by the traversal of the term trie.
+	 */
+	static final double TRIE_CHARACTER_COST = 8.0;
+
+	/**
+	 * Relative cost of processing a character by a scan.
+	 */
+	static final double SCAN_CHARACTER_COST = 1.0;
+
+	/**
+	 * Relative cost of processing a posting of a {@link QGramIndex}.
+	 */
+	static final double POSTING_COST = 0.1;
+
+	/**
+	 * Relative cost of checking the number of shared grams of a term in a
+	 * {@link QGramIndex}.
+	 */
+	static final double CANDIDATE_COST = 0.05;
+
+	private final Trie<?> trie;
+
+	/**
+	 * Number of terms of each length.
+	 */
+	private final int[] counts;
+
+	/**
+	 * Share of the term characters in each bucket of the character signature (see
+	 * {@link Trie#signature(char)}).
+	 */
+	private final double[] characterShares = new double[64];
+
+	/**
+	 * Average number of characters processed by the traversal of the term trie
+	 * per term for each reach, which are the characters of the trie nodes
+	 * starting within the reach.
+	 */
+	private final double[] trieReach;
+
+	/**
+	 * Counts the terms of each length, the term characters of each bucket of the
+	 * character signature and the characters of the trie nodes of each depth of
+	 * the given {@link Trie}.
+	 * 
+	 * @param trie {@link Trie} containing the terms
+	 */
+	QueryPlanner(Trie<?> trie) {
+		this.trie = trie;
+		int maxLength = -1;
+		for (Iterator<? extends Trie<?>> iterator = trie.populatedNodeIterator(); iterator.hasNext();) {
+			maxLength = Math.max(maxLength, iterator.next().keyLength());
+		}
+		this.counts = new int[maxLength + 1];
+		long[] bucketCharacters = new long[64];
+		long termCharacters = 0;
+		for (Iterator<? extends Trie<?>> iterator = trie.populatedNodeIterator(); iterator.hasNext();) {
+			String key = iterator.next().key();
+			this.counts[key.length()]++;
+			for (int i = 0; i < key.length(); i++) {
+				bucketCharacters[key.charAt(i) & 63]++;
+			}
+			termCharacters += key.length();
+		}
+		for (int bucket = 0; bucket < 64 && termCharacters > 0; bucket++) {
+			this.characterShares[bucket] = (double) bucketCharacters[bucket] / termCharacters;
+		}
+
+		// count characters of the trie nodes by depth
+		long[] characters = new long[maxLength + 1];
+		int terms = 0;
+		Deque<Trie<?>> nodes = new ArrayDeque<>();
+		nodes.push(trie);
+		while (!nodes.isEmpty()) {
+			Trie<?> node = nodes.pop();
+			if (node.isPopulated()) {
+				terms++;
+			}
+			if (node.depth() < maxLength) {
+				characters[node.depth() + 1] += node.keyLength() - node.depth();
+			}
+			for (Trie<?> child = node.firstChild(); child != null; child = child.nextSibling()) {
+				nodes.push(child);
+			}
+		}
+
+		// accumulate characters of the trie nodes starting within each reach
+		this.trieReach = new double[maxLength + 1];
+		for (int reach = 1; reach <= maxLength; reach++) {
+			this.trieReach[reach] = this.trieReach[reach - 1] + (double) characters[reach] / terms;
+		}
+	}
+
+	/**
+	 * Estimates the work of each {@link Engine} and chooses the cheapest one.
+	 * 
+	 * @param query          normalized query
+	 * @param threshold      minimum similarity of matching terms
+	 * @param fromTermLength minimum length of the matched terms
+	 * @param engine         {@link Engine} to use or {@link Engine#AUTO} to choose
+	 *                       the cheapest one
+	 * @param qgrams         {@link QGramIndex} of the terms or {@code null}, if it
+	 *                       has not been created
+	 * @return the {@link QueryPlan}
+	 */
+	QueryPlan plan(String query, double threshold, int fromTermLength, Engine engine, QGramIndex<?> qgrams) {
+		int queryLength = query.length();
+		// estimate share of term characters without common character
+		double contained = 0;
+		for (long signature = Trie.signature(query, 0); signature != 0; signature &= signature - 1) {
+			contained += this.characterShares[Long.numberOfTrailingZeros(signature)];
+		}
+		double missRate = 1 - Math.min(contained, 1) * HIT_RATE;
+
+		// count terms with each common prefix size
+		int maxCommonPrefixSize = Math.min(JaroWinklerSimilarity.COMMON_PREFIX_LENGTH_LIMIT, queryLength);
+		int[] prefixTerms = new int[maxCommonPrefixSize + 2];
+		for (int prefixSize = 0; prefixSize <= maxCommonPrefixSize; prefixSize++) {
+			prefixTerms[prefixSize] = this.prefixTerms(query, prefixSize);
+		}
+		if (prefixTerms[0] == 0) {
+			// no terms
+			return new QueryPlan(engine == Engine.AUTO ? Engine.TRIE : engine, 0, 0, qgrams == null ? -1 : 0);
+		}
+
+		int fromLength = Math.max(fromTermLength, JaroWinklerSimilarity.minTermLength(queryLength, threshold));
+		int toLength = Math.min(this.counts.length - 1, JaroWinklerSimilarity.maxTermLength(queryLength, threshold));
+
+		// estimate average number of shared characters per term character
+		long postings = 0;
+		long terms = 0;
+		double sharedRate = 0;
+		if (qgrams != null) {
+			postings = qgrams.postings(query, fromLength, toLength);
+			long termCharacters = 0;
+			for (int length = fromLength; length <= toLength; length++) {
+				terms += this.counts[length];
+				termCharacters += (long) this.counts[length] * length;
+			}
+			if (termCharacters > 0) {
+				sharedRate = (double) postings / termCharacters;
+			}
+		}
+
+		double trieWork = 0;
+		double scanWork = 0;
+		double verificationWork = 0;
+		for (int length = fromLength; length <= toLength; length++) {
+			if (this.counts[length] > 0) {
+				double lengthScanWork = 0;
+				for (int prefixSize = 0; prefixSize <= Math.min(maxCommonPrefixSize, length); prefixSize++) {
+					// terms with exactly this common prefix size
+					double prefixSizeTerms = (double) this.counts[length]
+							* (prefixTerms[prefixSize] - (prefixSize < length ? prefixTerms[prefixSize + 1] : 0))
+							/ prefixTerms[0];
+					int reach = reach(queryLength, length, threshold, prefixSize, missRate);
+					lengthScanWork += prefixSizeTerms * reach;
+					trieWork += prefixSizeTerms * this.trieReach[reach];
+				}
+				scanWork += lengthScanWork;
+				if (qgrams != null) {
+					int commonCharacters = minCommonCharacters(queryLength, length, threshold,
+							Math.min(maxCommonPrefixSize, length));
+					verificationWork += lengthScanWork
+							* candidateShare(Math.min(queryLength, length), sharedRate * length, commonCharacters);
+				}
+			}
+		}
+		double qgramWork = -1;
+		if (qgrams != null) {
+			qgramWork = postings + verificationWork;
+			if (engine == Engine.AUTO) {
+				double qgramCost = postings * POSTING_COST + terms * CANDIDATE_COST
+						+ verificationWork * SCAN_CHARACTER_COST;
+				if (qgramCost < Math.min(trieWork * TRIE_CHARACTER_COST, scanWork * SCAN_CHARACTER_COST)) {
+					engine = Engine.QGRAM;
+				}
+			}
+		}
+		if (engine == Engine.AUTO) {
+			engine = trieWork * TRIE_CHARACTER_COST <= scanWork * SCAN_CHARACTER_COST ? Engine.TRIE : Engine.SCAN;
+		}
+		return new QueryPlan(engine, Math.round(trieWork), Math.round(scanWork), Math.round(qgramWork));
+	}
+
+	/**
+	 * Returns the estimated share of the terms with at least the given number of
+	 * shared characters, assuming a binomial distribution of the number of shared
+	 * characters.
+	 * 
+	 * @param maxSharedCharacters     maximum number of shared characters
+	 * @param averageSharedCharacters average number of shared characters
+	 * @param sharedCharacters        required number of shared characters
+	 * @return estimated share of the terms
+	 */
+	static double candidateShare(int maxSharedCharacters, double averageSharedCharacters, int sharedCharacters) {
+		if (sharedCharacters <= 0) {
+			return 1;
+		}
+		double probability = Math.min(averageSharedCharacters / maxSharedCharacters, 1);
+		if (probability >= 1) {
+			return 1;
+		}
+		// sum probabilities of less than the required number of shared characters
+		double term = Math.pow(1 - probability, maxSharedCharacters);
+		double below = 0;
+		for (int k = 0; k < sharedCharacters; k++) {
+			below += term;
+			term *= (double) (maxSharedCharacters - k) / (k + 1) * probability / (1 - probability);
+		}
+		return Math.max(1 - below, 0);
+	}
+
+	/**
+	 * @param query      normalized query
+	 * @param prefixSize size of the prefix
+	 * @return number of terms starting with the prefix of the given size of the
+	 *         query
+	 */
+	private int prefixTerms(String query, int prefixSize) {
+		Trie<?> node = this.trie;
+		for (;;) {
+			// compare characters of the node within the prefix
+			int depth = node.depth();
+			if (Math.min(node.keyLength(), prefixSize) > depth
+					&& !node.symbolRegionMatches(query, depth, Math.min(node.keyLength(), prefixSize) - depth)) {
+				return 0;
+			}
+			if (node.keyLength() >= prefixSize) {
+				return node.size();
+			}
+			// find child containing the next character
+			Trie<?> child = node.firstChild();
+			while (child != null
+					&& (child.symbolLength() == 0 || child.symbolChar(0) != query.charAt(node.keyLength()))) {
+				child = child.nextSibling();
+			}
+			if (child == null) {
+				return 0;
+			}
+			node = child;
+		}
+	}
+
+	/**
+	 * Returns the estimated number of processed characters of an unrelated term
+	 * of the given length. The processing stops as soon as the term characters
+	 * without common character exceed the term characters not required for the
+	 * threshold, or the query characters without common character, which leave
+	 * the window behind the current term character, exceed the query characters
+	 * not required for the threshold.
+	 * 
+	 * @param queryLength      length of the query
+	 * @param termLength       length of the term
+	 * @param threshold        minimum similarity of matching terms
+	 * @param commonPrefixSize size of the common prefix of the term and the query
+	 * @param missRate         share of term characters without common character
+	 * @return estimated number of processed characters
+	 */
+	static int reach(int queryLength, int termLength, double threshold, int commonPrefixSize, double missRate) {
+		int commonCharacters = minCommonCharacters(queryLength, termLength, threshold, commonPrefixSize);
+		double termReach = (termLength - commonCharacters + 1) / missRate;
+		double queryReach = JaroWinklerSimilarity.windowSize(queryLength, termLength)
+				+ (queryLength - commonCharacters + 1) / missRate;
+		return (int) Math.min(termLength, commonPrefixSize + Math.ceil(Math.min(termReach, queryReach)));
+	}
+
+	/**
+	 * Returns the minimum number of common characters of a term of the given
+	 * length and the query to meet the threshold, assuming no transpositions.
+	 * 
+	 * @param queryLength      length of the query
+	 * @param termLength       length of the term
+	 * @param threshold        minimum similarity of matching terms
+	 * @param commonPrefixSize size of the common prefix of the term and the query
+	 * @return minimum number of common characters or the maximum number of common
+	 *         characters, if the threshold can not be met
+	 */
+	static int minCommonCharacters(int queryLength, int termLength, double threshold, int commonPrefixSize) {
+		int lowerBound = 0;
+		int upperBound = Math.min(queryLength, termLength);
+		// binary search of the minimum number of common characters meeting the
+		// threshold
+		while (lowerBound < upperBound) {
+			int commonCharacters = (lowerBound + upperBound) >>> 1;
+			if (JaroWinklerSimilarity.jaroWinklerSimilarity(commonCharacters, queryLength, termLength, 0,
+					Math.min(commonPrefixSize, commonCharacters)) >= threshold) {
+				upperBound = commonCharacters;
+			} else {
+				lowerBound = commonCharacters + 1;
+			}
+		}
+		return lowerBound;
+	}
+}
@@ -0,0 +1,448 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Receives the matching trie nodes found by the trie traversal in
+ * {@link JaroWinklerSimilarity} and provides the current threshold of the
+ * traversal. A {@link ResultCollector} may raise its threshold during the
+ * traversal to prune the remaining traversal.
+ *
+ * @param <R> Type of the trie values
+ *
+ * @since 1.1.1
+ */
+abstract class ResultCollector<R> {
+
+	/**
+	 * Several values of one trie node, e.g. of several terms that are equal after
+	 * normalization. Stored in place of a single value and passed one by one to
+	 * {@link ValueCollector#collect(Trie, Object, double)}.
+	 */
+	static final class MultipleValues {
+
+		final Object[] values;
+
+		MultipleValues(Object[] values) {
+			this.values = values;
+		}
+	}
+
+	/**
+	 * Collects the values of the matching trie nodes. Several values of one trie
+	 * node stored as {@link MultipleValues} are collected one by one as long as
+	 * the similarity meets the current threshold.
+	 */
+	abstract static class ValueCollector<R> extends ResultCollector<R> {
+
+		ValueCollector(double threshold) {
+			super(threshold);
+		}
+
+		@Override
+		final void collect(Trie<R> node, double similarity) {
+			Object value = node.value();
+			if (value instanceof MultipleValues) {
+				for (Object singleValue : ((MultipleValues) value).values) {
+					if (similarity < this.threshold) {
+						// threshold has been raised
+						return;
+					}
+					@SuppressWarnings("unchecked")
+					R castValue = (R) singleValue;
+					this.collect(node, castValue, similarity);
+				}
+			} else {
+				@SuppressWarnings("unchecked")
+				R castValue = (R) value;
+				this.collect(node, castValue, similarity);
+			}
+		}
+
+		/**
+		 * Collects a value of a populated trie node whose similarity meets the
+		 * current threshold.
+		 *
+		 * @param node       matching populated trie node
+		 * @param value      value of the trie node
+		 * @param similarity similarity of the key of the trie node
+		 */
+		abstract void collect(Trie<R> node, R value, double similarity);
+	}
+
+	/**
+	 * Collects the matching values into a {@link Map}. If several matching terms
+	 * have the same value, the maximum similarity is kept.
+	 */
+	static class MapCollector<R> extends ValueCollector<R> {
+
+		final Map<R, Double> results;
+
+		MapCollector(double threshold, Map<R, Double> results) {
+			super(threshold);
+			this.results = results;
+		}
+
+		@Override
+		void collect(Trie<R> node, R value, double similarity) {
+			this.results.merge(value, similarity, Math::max);
+		}
+	}
+
+	/**
+	 * Passes the matching values directly to a {@link SimilaritySink}. Stops the
+	 * traversal as soon as the {@link SimilaritySink} rejects further values.
+	 */
+	static class SinkCollector<R> extends ValueCollector<R> {
+
+		private final SimilaritySink<? super R> sink;
+		boolean stopped = false;
+
+		SinkCollector(double threshold, SimilaritySink<? super R> sink) {
+			super(threshold);
+			this.sink = sink;
+		}
+
+		@Override
+		void collect(Trie<R> node, R value, double similarity) {
+			if (!this.sink.accept(value, similarity)) {
+				this.stopped = true;
+				this.stop();
+			}
+		}
+	}
+
+	/**
+	 * Records whether any matching trie node has been found and stops the
+	 * traversal at the first one.
+	 */
+	static class AnyCollector<R> extends ResultCollector<R> {
+
+		boolean found = false;
+
+		AnyCollector(double threshold) {
+			super(threshold);
+		}
+
+		@Override
+		void collect(Trie<R> node, double similarity) {
+			this.found = true;
+			this.stop();
+		}
+	}
+
+	/**
+	 * Counts the matching trie nodes without accessing their values, unless the
+	 * values might be {@link MultipleValues}, which are counted one by one.
+	 */
+	static class CountCollector<R> extends ResultCollector<R> {
+
+		private final boolean multipleValues;
+		int count = 0;
+
+		CountCollector(double threshold, boolean multipleValues) {
+			super(threshold);
+			this.multipleValues = multipleValues;
+		}
+
+		@Override
+		void collect(Trie<R> node, double similarity) {
+			if (this.multipleValues && node.value() instanceof MultipleValues) {
+				this.count += ((MultipleValues) node.value()).values.length;
+			} else {
+				this.count++;
+			}
+		}
+	}
+
+	/**
+	 * Passes pairs of a given value and the matching values to a
+	 * {@link SimilarityPairSink}. Stops the traversal as soon as the
+	 * {@link SimilarityPairSink} rejects further pairs, also if another
+	 * {@link PairCollector} sharing the same stop flag has been stopped.
+	 */
+	static class PairCollector<L, R> extends ValueCollector<R> {
+
+		private final double initialThreshold;
+		private final SimilarityPairSink<? super L, ? super R> sink;
+		private final AtomicBoolean stopped;
+		/**
+		 * Value of the current query or {@link MultipleValues}.
+		 */
+		Object left;
+
+		PairCollector(double threshold, SimilarityPairSink<? super L, ? super R> sink, AtomicBoolean stopped) {
+			super(threshold);
+			this.initialThreshold = threshold;
+			this.sink = sink;
+			this.stopped = stopped;
+		}
+
+		/**
+		 * Prepares this {@link PairCollector} for the next query.
+		 *
+		 * @param left value of the next query
+		 */
+		void reset(L left) {
+			this.left = left;
+			this.threshold = this.initialThreshold;
+		}
+
+		@Override
+		void collect(Trie<R> node, R value, double similarity) {
+			if (this.left instanceof MultipleValues) {
+				for (Object left : ((MultipleValues) this.left).values) {
+					@SuppressWarnings("unchecked")
+					L castLeft = (L) left;
+					if (!this.pass(castLeft, value, similarity)) {
+						return;
+					}
+				}
+			} else {
+				@SuppressWarnings("unchecked")
+				L castLeft = (L) this.left;
+				this.pass(castLeft, value, similarity);
+			}
+		}
+
+		/**
+		 * Passes a pair to the {@link SimilarityPairSink} unless the matching has
+		 * been stopped.
+		 *
+		 * @return {@code true}, if the matching continues, otherwise {@code false}
+		 */
+		boolean pass(L left, R right, double similarity) {
+			if (this.stopped.get() || !this.sink.accept(left, right, similarity)) {
+				this.stopped.set(true);
+				this.stop();
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Passes pairs of the value of a given term of the same trie and the matching
+	 * values to a {@link SimilarityPairSink}. Matching terms of the same length as
+	 * the given term are skipped until the given term itself has been passed. As
+	 * the trie is always traversed in the same order and only terms of at least
+	 * the length of the given term are matched, each unordered pair of terms is
+	 * passed only once.
+	 */
+	static class SelfPairCollector<R> extends PairCollector<R, R> {
+
+		private Trie<R> term;
+		private boolean termPassed;
+
+		SelfPairCollector(double threshold, SimilarityPairSink<? super R, ? super R> sink, AtomicBoolean stopped) {
+			super(threshold, sink, stopped);
+		}
+
+		/**
+		 * Prepares this {@link SelfPairCollector} for the next term.
+		 *
+		 * @param term populated trie node of the next term
+		 */
+		void reset(Trie<R> term) {
+			this.reset(term.value());
+			this.term = term;
+			this.termPassed = false;
+		}
+
+		/**
+		 * Passes the pairs of several values of the current term, which have a
+		 * similarity of 1.
+		 */
+		void collectTermPairs() {
+			if (this.left instanceof MultipleValues && this.threshold <= 1) {
+				Object[] values = ((MultipleValues) this.left).values;
+				for (int i = 0; i < values.length; i++) {
+					for (int j = i + 1; j < values.length; j++) {
+						@SuppressWarnings("unchecked")
+						R left = (R) values[i];
+						@SuppressWarnings("unchecked")
+						R right = (R) values[j];
+						if (!this.pass(left, right, 1)) {
+							return;
+						}
+					}
+				}
+			}
+		}
+
+		@Override
+		void collect(Trie<R> node, R value, double similarity) {
+			if (node == this.term) {
+				this.termPassed = true;
+			} else if (this.termPassed || node.keyLength() != this.term.keyLength()) {
+				super.collect(node, value, similarity);
+			}
+			// otherwise, pair has been passed by the matching of the other term before
+		}
+	}
+
+	/**
+	 * Collects the {@code k} values with the highest similarity in a bounded min
+	 * heap. As soon as {@code k} values have been collected, the threshold is
+	 * raised above the lowest similarity in the heap.
+	 */
+	static class TopCollector<R> extends ValueCollector<R> {
+
+		private final int k;
+		private final double minThreshold;
+		private Object[] values;
+		private double[] similarities;
+		/**
+		 * Heap positions of the collected values to keep the maximum similarity of
+		 * values of several matching terms.
+		 */
+		private final Map<R, Integer> positions = new HashMap<R, Integer>();
+		private int size = 0;
+
+		TopCollector(int k, double minThreshold) {
+			super(minThreshold);
+			if (k < 1) {
+				throw new IllegalArgumentException("k must be positive.");
+			}
+			this.k = k;
+			this.minThreshold = minThreshold;
+			this.values = new Object[Math.min(k, 16)];
+			this.similarities = new double[Math.min(k, 16)];
+		}
+
+		@Override
+		void collect(Trie<R> node, R value, double similarity) {
+			Integer position = this.positions.get(value);
+			if (position != null) {
+				// value already collected
+				if (similarity > this.similarities[position]) {
+					this.similarities[position] = similarity;
+					this.siftDown(position);
+				}
+			} else if (this.size < this.k) {
+				// heap not full
+				if (this.size == this.values.length) {
+					int capacity = (int) Math.min(this.k, this.size * 2L);
+					this.values = Arrays.copyOf(this.values, capacity);
+					this.similarities = Arrays.copyOf(this.similarities, capacity);
+				}
+				this.set(this.size, value, similarity);
+				this.siftUp(this.size++);
+			} else if (similarity > this.similarities[0]) {
+				// replace value with lowest similarity
+				this.positions.remove(this.values[0]);
+				this.set(0, value, similarity);
+				this.siftDown(0);
+			}
+			if (this.size == this.k) {
+				this.threshold = Math.max(this.minThreshold, Math.nextUp(this.similarities[0]));
+			}
+		}
+
+		private void set(int position, Object value, double similarity) {
+			this.values[position] = value;
+			this.similarities[position] = similarity;
+			@SuppressWarnings("unchecked")
+			R key = (R) value;
+			this.positions.put(key, position);
+		}
+
+		private void siftDown(int position) {
+			Object value = this.values[position];
+			double similarity = this.similarities[position];
+			int child;
+			while ((child = 2 * position + 1) < this.size) {
+				if (child + 1 < this.size && this.similarities[child + 1] < this.similarities[child]) {
+					child++;
+				}
+				if (this.similarities[child] >= similarity) {
+					break;
+				}
+				this.set(position, this.values[child], this.similarities[child]);
+				position = child;
+			}
+			this.set(position, value, similarity);
+		}
+
+		private void siftUp(int position) {
+			Object value = this.values[position];
+			double similarity = this.similarities[position];
+			while (position > 0) {
+				int parent = (position - 1) / 2;
+				if (this.similarities[parent] <= similarity) {
+					break;
+				}
+				this.set(position, this.values[parent], this.similarities[parent]);
+				position = parent;
+			}
+			this.set(position, value, similarity);
+		}
+
+		/**
+		 * @return {@link Map} of the collected values and their similarity ordered
+		 *         by descending similarity
+		 */
+		Map<R, Double> results() {
+			Integer[] order = new Integer[this.size];
+			for (int i = 0; i < this.size; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> Double.compare(this.similarities[b], this.similarities[a]));
+			Map<R, Double> results = new LinkedHashMap<R, Double>();
+			for (int i : order) {
+				@SuppressWarnings("unchecked")
+				R value = (R) this.values[i];
+				results.put(value, this.similarities[i]);
+			}
+			return results;
+		}
+	}
+
+	/**
+	 * Current minimum similarity of matching terms.
+	 */
+	double threshold;
+
+	ResultCollector(double threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Stops the traversal by raising the threshold above any similarity.
+	 */
+	void stop() {
+		this.threshold = Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Collects a populated trie node whose similarity meets the current threshold.
+	 *
+	 * @param node       matching populated trie node
+	 * @param similarity similarity of the key of the trie node
+	 */
+	abstract void collect(Trie<R> node, double similarity);
+}
@@ -0,0 +1,75 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Receiver of matching pairs of values and their similarity, which are passed
+ * as soon as they have been found. The similarity is passed as primitive value
+ * and no intermediate result collection is created.
+ *
+ * @param <L> Type of the first values of the pairs.
+ * @param <R> Type of the second values of the pairs.
+ *
+ * @since 1.1.1
+ */
+@FunctionalInterface
+public interface SimilarityPairSink<L, R> {
+
+	/**
+	 * Receives a matching pair of values.
+	 *
+	 * @param left       first value of the pair
+	 * @param right      second value of the pair
+	 * @param similarity similarity of the terms of the pair
+	 * @return {@code true}, to continue the matching, or {@code false}, to stop
+	 *         the matching
+	 */
+	boolean accept(L left, R right, double similarity);
+
+	/**
+	 * Returns a thread safe {@link SimilarityPairSink} that writes each pair as a
+	 * line of tab separated values (left value, right value, similarity) to the
+	 * given {@link Appendable}, e.g. a {@link java.io.Writer} of a file. This
+	 * allows to spill large results instead of keeping them in memory.
+	 *
+	 * @param out {@link Appendable} to write the pairs to
+	 * @param <L> Type of the first values of the pairs.
+	 * @param <R> Type of the second values of the pairs.
+	 * @return {@link SimilarityPairSink} writing to the given {@link Appendable}
+	 * @throws UncheckedIOException on a failed write
+	 */
+	static <L, R> SimilarityPairSink<L, R> writer(Appendable out) {
+		return (left, right, similarity) -> {
+			synchronized (out) {
+				try {
+					out.append(String.valueOf(left)).append('\t').append(String.valueOf(right)).append('\t')
+							.append(Double.toString(similarity)).append('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			return true;
+		};
+	}
+}
@@ -0,0 +1,236 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reusable container of matching values and their similarity backed by
+ * parallel arrays. In contrast to a {@link Map}, the similarities are not boxed
+ * and no entry objects are created. If deduplication is enabled, an open
+ * addressing index keeps each value only once with its maximum similarity.
+ * <p>
+ * A {@link SimilarityResults} can be filled by
+ * {@link JaroWinklerSimilarity#apply(String, double, SimilarityResults)} and
+ * reused after {@link #clear()} without new allocations once its capacity is
+ * sufficient.
+ *
+ * @param <T> Type of the matching values.
+ *
+ * @since 1.1.1
+ */
+public final class SimilarityResults<T> implements SimilaritySink<T> {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Object[] values = new Object[INITIAL_CAPACITY];
+	private double[] similarities = new double[INITIAL_CAPACITY];
+	private int size = 0;
+	/**
+	 * Open addressing index with linear probing of the positions of the values
+	 * (position + 1, 0 = empty) or {@code null}, if deduplication is disabled.
+	 */
+	private int[] index;
+
+	/**
+	 * Creates an empty {@link SimilarityResults} without deduplication.
+	 */
+	public SimilarityResults() {
+		this(false);
+	}
+
+	/**
+	 * Creates an empty {@link SimilarityResults}.
+	 *
+	 * @param deduplicate If {@code true}, each value is kept only once with its
+	 *                    maximum similarity. Only required, if several terms have
+	 *                    the same value.
+	 */
+	public SimilarityResults(boolean deduplicate) {
+		this.index = deduplicate ? new int[2 * INITIAL_CAPACITY] : null;
+	}
+
+	/**
+	 * Adds a value and its similarity. If deduplication is enabled and the value
+	 * is already contained, only the maximum similarity is kept.
+	 *
+	 * @param value      matching value
+	 * @param similarity similarity of the matching term
+	 * @return always {@code true}
+	 */
+	@Override
+	public boolean accept(T value, double similarity) {
+		if (this.index != null) {
+			int mask = this.index.length - 1;
+			int slot = hash(value) & mask;
+			while (this.index[slot] != 0) {
+				int position = this.index[slot] - 1;
+				if (Objects.equals(this.values[position], value)) {
+					// value already contained
+					if (similarity > this.similarities[position]) {
+						this.similarities[position] = similarity;
+					}
+					return true;
+				}
+				slot = (slot + 1) & mask;
+			}
+			this.index[slot] = this.size + 1;
+		}
+		if (this.size == this.values.length) {
+			this.values = Arrays.copyOf(this.values, this.size * 2);
+			this.similarities = Arrays.copyOf(this.similarities, this.size * 2);
+		}
+		this.values[this.size] = value;
+		this.similarities[this.size] = similarity;
+		this.size++;
+		if (this.index != null && this.size * 2 > this.index.length) {
+			this.index = new int[this.index.length * 2];
+			this.reindex();
+		}
+		return true;
+	}
+
+	/**
+	 * Removes all values but keeps the capacity for reuse.
+	 */
+	public void clear() {
+		Arrays.fill(this.values, 0, this.size, null);
+		if (this.index != null) {
+			Arrays.fill(this.index, 0);
+		}
+		this.size = 0;
+	}
+
+	/**
+	 * @return number of contained values
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return {@code true}, if no values are contained, otherwise {@code false}
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * @param position position of the value
+	 * @return value at the given position
+	 * @throws IndexOutOfBoundsException if the position is out of range
+	 */
+	@SuppressWarnings("unchecked")
+	public T value(int position) {
+		this.checkPosition(position);
+		return (T) this.values[position];
+	}
+
+	/**
+	 * @param position position of the value
+	 * @return similarity of the value at the given position
+	 * @throws IndexOutOfBoundsException if the position is out of range
+	 */
+	public double similarity(int position) {
+		this.checkPosition(position);
+		return this.similarities[position];
+	}
+
+	/**
+	 * Sorts the contained values in place by descending similarity.
+	 */
+	public void sortBySimilarity() {
+		// heap sort using a min heap to get a descending order
+		for (int i = this.size / 2 - 1; i >= 0; i--) {
+			this.siftDown(i, this.size);
+		}
+		for (int end = this.size - 1; end > 0; end--) {
+			this.swap(0, end);
+			this.siftDown(0, end);
+		}
+		if (this.index != null) {
+			Arrays.fill(this.index, 0);
+			this.reindex();
+		}
+	}
+
+	/**
+	 * @return {@link Map} of the contained values and their similarity in the
+	 *         current order
+	 */
+	public Map<T, Double> toMap() {
+		Map<T, Double> map = new LinkedHashMap<T, Double>();
+		for (int i = 0; i < this.size; i++) {
+			@SuppressWarnings("unchecked")
+			T value = (T) this.values[i];
+			map.merge(value, this.similarities[i], Math::max);
+		}
+		return map;
+	}
+
+	private void checkPosition(int position) {
+		if (position < 0 || position >= this.size) {
+			throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + this.size);
+		}
+	}
+
+	private static int hash(Object value) {
+		int hash = Objects.hashCode(value);
+		return hash ^ (hash >>> 16);
+	}
+
+	private void reindex() {
+		int mask = this.index.length - 1;
+		for (int position = 0; position < this.size; position++) {
+			int slot = hash(this.values[position]) & mask;
+			while (this.index[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			this.index[slot] = position + 1;
+		}
+	}
+
+	private void siftDown(int position, int end) {
+		int child;
+		while ((child = 2 * position + 1) < end) {
+			if (child + 1 < end && this.similarities[child + 1] < this.similarities[child]) {
+				child++;
+			}
+			if (this.similarities[child] >= this.similarities[position]) {
+				return;
+			}
+			this.swap(position, child);
+			position = child;
+		}
+	}
+
+	private void swap(int i, int j) {
+		Object value = this.values[i];
+		this.values[i] = this.values[j];
+		this.values[j] = value;
+		double similarity = this.similarities[i];
+		this.similarities[i] = this.similarities[j];
+		this.similarities[j] = similarity;
+	}
+}
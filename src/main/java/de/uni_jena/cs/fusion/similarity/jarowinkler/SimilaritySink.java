@@ -0,0 +1,44 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Receiver of matching values and their similarity, which are passed as soon
+ * as they have been found. The similarity is passed as primitive value and no
+ * intermediate result {@link java.util.Map} is created.
+ *
+ * @param <T> Type of the matching values.
+ *
+ * @since 1.1.1
+ */
+@FunctionalInterface
+public interface SimilaritySink<T> {
+
+	/**
+	 * Receives a matching value.
+	 *
+	 * @param value      matching value
+	 * @param similarity similarity of the matching term
+	 * @return {@code true}, to continue the matching, or {@code false}, to stop
+	 *         the matching
+	 */
+	boolean accept(T value, double similarity);
+}
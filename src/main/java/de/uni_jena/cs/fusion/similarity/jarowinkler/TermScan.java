@@ -0,0 +1,159 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.Iterator;
+
+/**
+ * Columnar copy of the terms of a {@link Trie} for linear scans. The
+ * characters of all terms are stored contiguously in one array, ordered by the
+ * length of the terms, and the terms of each length form a consecutive bucket.
+ * A query is matched by scoring each term of the buckets of the lengths that
+ * can meet the threshold with the bit parallel {@link PairwiseSimilarity}
+ * kernel. In contrast to the traversal of the {@link Trie}, the cost of a scan
+ * does not depend on the threshold, except for the selection of the buckets.
+ * Therefore, a scan is faster for low thresholds, which prune little of the
+ * {@link Trie}.
+ * 
+ * @param <T> Type of the values of the terms
+ *
+ * @since 1.1.1
+ */
+final class TermScan<T> {
+
+	/**
+	 * Characters of all terms ordered by length.
+	 */
+	final char[] characters;
+
+	/**
+	 * Position of the first character of each term in {@link #characters}, followed
+	 * by the end position of the last term.
+	 */
+	final int[] offsets;
+
+	/**
+	 * Populated trie node of each term, which provides the values of the term.
+	 */
+	final Trie<T>[] nodes;
+
+	/**
+	 * Index of the first term of each length, followed by the number of terms.
+	 */
+	final int[] lengthStarts;
+
+	/**
+	 * Creates a columnar copy of the terms of the given {@link Trie}.
+	 * 
+	 * @param trie {@link Trie} containing the terms
+	 */
+	TermScan(Trie<T> trie) {
+		// count terms per length
+		int maxLength = -1;
+		int size = 0;
+		int characterCount = 0;
+		for (Iterator<? extends Trie<T>> iterator = trie.populatedNodeIterator(); iterator.hasNext();) {
+			Trie<T> node = iterator.next();
+			maxLength = Math.max(maxLength, node.keyLength());
+			size++;
+			characterCount += node.keyLength();
+		}
+		this.lengthStarts = new int[maxLength + 2];
+		for (Iterator<? extends Trie<T>> iterator = trie.populatedNodeIterator(); iterator.hasNext();) {
+			this.lengthStarts[iterator.next().keyLength() + 1]++;
+		}
+		for (int length = 1; length < this.lengthStarts.length; length++) {
+			this.lengthStarts[length] += this.lengthStarts[length - 1];
+		}
+
+		// copy terms into their buckets
+		this.characters = new char[characterCount];
+		this.offsets = new int[size + 1];
+		@SuppressWarnings("unchecked")
+		Trie<T>[] nodes = (Trie<T>[]) new Trie<?>[size];
+		this.nodes = nodes;
+		int[] next = new int[maxLength + 1];
+		System.arraycopy(this.lengthStarts, 0, next, 0, maxLength + 1);
+		for (int length = 0; length <= maxLength; length++) {
+			for (int i = this.lengthStarts[length]; i < this.lengthStarts[length + 1]; i++) {
+				this.offsets[i + 1] = this.offsets[i] + length;
+			}
+		}
+		for (Iterator<? extends Trie<T>> iterator = trie.populatedNodeIterator(); iterator.hasNext();) {
+			Trie<T> node = iterator.next();
+			int index = next[node.keyLength()]++;
+			node.key().getChars(0, node.keyLength(), this.characters, this.offsets[index]);
+			this.nodes[index] = node;
+		}
+	}
+
+	/**
+	 * Matches a query against the terms of the given minimum length and passes
+	 * the matching trie nodes to the given {@link ResultCollector}. Lengths are
+	 * processed in ascending order. The range of processed lengths follows the
+	 * current threshold of the {@link ResultCollector}.
+	 * 
+	 * @param query          normalized query
+	 * @param fromTermLength Minimum length of the matched terms.
+	 * @param collector      Receiver of the matching trie nodes, which also
+	 *                       provides the current threshold.
+	 * @return number of term characters processed by the scan, as a measure of
+	 *         the work of the scan
+	 */
+	long match(String query, int fromTermLength, ResultCollector<T> collector) {
+		int queryLength = query.length();
+		int maxLength = this.lengthStarts.length - 2;
+		PairwiseSimilarity similarity = PairwiseSimilarity.acquire(query);
+		try {
+			for (int length = Math.max(fromTermLength,
+					JaroWinklerSimilarity.minTermLength(queryLength, collector.threshold)); length <= Math.min(
+							maxLength, JaroWinklerSimilarity.maxTermLength(queryLength, collector.threshold)); length++) {
+				double maxSimilarity = JaroWinklerSimilarity.maxSimilarity(queryLength, length);
+				for (int i = this.lengthStarts[length]; i < this.lengthStarts[length + 1]
+						&& maxSimilarity >= collector.threshold; i++) {
+					double termSimilarity = similarity.match(this.characters, this.offsets[i], length,
+							collector.threshold);
+					if (termSimilarity != JaroWinklerSimilarity.BELOW_THRESHOLD) {
+						collector.collect(this.nodes[i], termSimilarity);
+					}
+				}
+			}
+			return similarity.processedCharacters;
+		} finally {
+			similarity.release();
+		}
+	}
+
+	/**
+	 * @param length length of the terms
+	 * @return number of terms of the given length
+	 */
+	int count(int length) {
+		return length < 0 || length >= this.lengthStarts.length - 1 ? 0
+				: this.lengthStarts[length + 1] - this.lengthStarts[length];
+	}
+
+	/**
+	 * @return number of terms
+	 */
+	int size() {
+		return this.nodes.length;
+	}
+}
@@ -0,0 +1,531 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Reusable scratch buffers of the trie traversal in
+ * {@link JaroWinklerSimilarity}. The buffers are modified on the way down the
+ * trie and restored on the way up (undo on return), so that a traversal does
+ * not need to copy them for each child. Instances are thread confined and
+ * cached per thread, so that a query does not allocate any buffers once the
+ * buffers of the current thread are large enough.
+ *
+ * @since 1.1.1
+ */
+final class TraversalState {
+
+	private static final ThreadLocal<TraversalState> CACHE = ThreadLocal.withInitial(TraversalState::new);
+
+	/**
+	 * Returns a {@link TraversalState} for exclusive use by the current thread.
+	 * Must be returned with {@link #release()} after use. If the cached instance
+	 * of the current thread is already in use (e.g. due to a nested query), a
+	 * new instance is returned.
+	 *
+	 * @param queryLength maximum length of the queries to process
+	 * @param termLength  maximum length of the terms to process
+	 * @return {@link TraversalState} with sufficient capacity
+	 */
+	static TraversalState acquire(int queryLength, int termLength) {
+		TraversalState state = CACHE.get();
+		if (state.inUse) {
+			state = new TraversalState();
+		}
+		state.inUse = true;
+		state.ensureCapacity(queryLength, termLength);
+		return state;
+	}
+
+	/**
+	 * Characters of the current query.
+	 */
+	char[] query = new char[0];
+
+	/**
+	 * Number of words of the current query.
+	 */
+	private int queryWords = 0;
+
+	/**
+	 * Slot of each Latin-1 character of the current query in
+	 * {@link #queryOccurrences} (slot + 1, 0 = not contained).
+	 */
+	private final int[] queryLatin1Slots = new int[256];
+
+	/**
+	 * Characters outside of Latin-1 of the current query in the order of their
+	 * slots, following the slots of the Latin-1 characters.
+	 */
+	private char[] queryNonLatin1Characters = new char[0];
+
+	/**
+	 * Number of characters outside of Latin-1 of the current query.
+	 */
+	private int queryNonLatin1Count = 0;
+
+	/**
+	 * Slot of the first character outside of Latin-1 of the current query.
+	 */
+	private int queryNonLatin1SlotOffset = 0;
+
+	/**
+	 * Positions of each character of the current query packed into words of 64
+	 * bits (1 = character at position), consecutively for each slot.
+	 */
+	private long[] queryOccurrences = new long[0];
+
+	/**
+	 * Positions of the characters of the current query in each bucket of the
+	 * character signature (see {@link Trie#signature(char)}) packed into words of
+	 * 64 bits, consecutively for each bucket.
+	 */
+	private long[] signatureOccurrences = new long[0];
+
+	/**
+	 * Positions of the characters of the current query within the signature of
+	 * the last call of {@link #restrict(long)} packed into words of 64 bits.
+	 */
+	private long[] eligibleQuery = new long[0];
+
+	/**
+	 * Character signature (see {@link Trie#signature(char)}) of the current
+	 * query.
+	 */
+	private long querySignature = 0L;
+
+	/**
+	 * Assigned characters of the query packed into words of 64 bits (1 =
+	 * assigned).
+	 */
+	long[] assignedQuery = new long[0];
+
+	/**
+	 * Position of the query character assigned to each term character or
+	 * {@code -1}, if the term character is not assigned. Used to undo the
+	 * assignments of a trie node on return.
+	 */
+	int[] assignedTerm = new int[0];
+
+	/**
+	 * Assigned characters of the term in term order.
+	 */
+	char[] commonCharsTerm = new char[0];
+
+	/**
+	 * Stack of the total lengths of the terms that are still reachable by the
+	 * current branch. Each trie node pushes its own list of lengths on top of the
+	 * list of its parent.
+	 */
+	int[] termTargetLengths = new int[1];
+
+	/**
+	 * Trie nodes of the current branch of the traversal by level, whose children
+	 * are currently processed.
+	 */
+	Trie<?>[] frameNodes = new Trie<?>[0];
+
+	/**
+	 * First index of the target lengths in {@link #termTargetLengths} passed to
+	 * the children of the trie node of each level.
+	 */
+	int[] frameTermTargetLengthsFrom = new int[0];
+
+	/**
+	 * Last index (exclusive) of the target lengths in {@link #termTargetLengths}
+	 * passed to the children of the trie node of each level.
+	 */
+	int[] frameTermTargetLengthsTo = new int[0];
+
+	/**
+	 * Min number of common characters passed to the children of the trie node of
+	 * each level.
+	 */
+	int[] frameMinCommonCharacters = new int[0];
+
+	/**
+	 * Min number of half transpositions passed to the children of the trie node of
+	 * each level.
+	 */
+	int[] frameMinHalfTranspositions = new int[0];
+
+	/**
+	 * Max size of the common prefix passed to the children of the trie node of
+	 * each level.
+	 */
+	int[] frameMaxCommonPrefixSize = new int[0];
+
+	/**
+	 * Number of assigned characters of the query whose predecessors are outside of
+	 * the window passed to the children of the trie node of each level.
+	 */
+	int[] frameSaveCommonCharsQuery = new int[0];
+
+	/**
+	 * Number of term characters processed by the traversal since the last call of
+	 * {@link #setQuery(String)}, as a measure of the work of the traversal.
+	 */
+	long processedCharacters = 0;
+
+	private boolean inUse = false;
+
+	/**
+	 * Ensures that the buffers are large enough for the given lengths and resets
+	 * the query assignments.
+	 *
+	 * @param queryLength maximum length of the queries to process
+	 * @param termLength  maximum length of the terms to process
+	 */
+	void ensureCapacity(int queryLength, int termLength) {
+		int queryWords = words(queryLength);
+		if (this.assignedQuery.length < queryWords) {
+			this.assignedQuery = new long[queryWords];
+		} else {
+			Arrays.fill(this.assignedQuery, 0, queryWords, 0L);
+		}
+		if (this.assignedTerm.length < termLength) {
+			this.assignedTerm = new int[termLength];
+		}
+		if (this.commonCharsTerm.length < Math.min(queryLength, termLength)) {
+			this.commonCharsTerm = new char[Math.min(queryLength, termLength)];
+		}
+	}
+
+	/**
+	 * Sets the current query. The characters of the query are copied into
+	 * {@link #query} and the positions of each character are recorded to find
+	 * matching characters without scanning the query.
+	 *
+	 * @param query the query
+	 */
+	void setQuery(String query) {
+		this.processedCharacters = 0;
+		int queryLength = query.length();
+		if (this.query.length < queryLength) {
+			this.query = new char[queryLength];
+		}
+		query.getChars(0, queryLength, this.query, 0);
+
+		// assign slots to the characters
+		Arrays.fill(this.queryLatin1Slots, 0);
+		this.queryNonLatin1Count = 0;
+		int latin1Count = 0;
+		for (int i = 0; i < queryLength; i++) {
+			char character = this.query[i];
+			if (character <= 0xFF) {
+				if (this.queryLatin1Slots[character] == 0) {
+					this.queryLatin1Slots[character] = ++latin1Count;
+				}
+			} else if (this.nonLatin1Slot(character) < 0) {
+				if (this.queryNonLatin1Characters.length == this.queryNonLatin1Count) {
+					this.queryNonLatin1Characters = Arrays.copyOf(this.queryNonLatin1Characters,
+							Math.max(8, this.queryNonLatin1Count * 2));
+				}
+				this.queryNonLatin1Characters[this.queryNonLatin1Count++] = character;
+			}
+		}
+		this.queryNonLatin1SlotOffset = latin1Count;
+
+		// record positions of the characters
+		this.queryWords = words(queryLength);
+		int occurrencesLength = (latin1Count + this.queryNonLatin1Count) * this.queryWords;
+		if (this.queryOccurrences.length < occurrencesLength) {
+			this.queryOccurrences = new long[occurrencesLength];
+		} else {
+			Arrays.fill(this.queryOccurrences, 0, occurrencesLength, 0L);
+		}
+		if (this.signatureOccurrences.length < 64 * this.queryWords) {
+			this.signatureOccurrences = new long[64 * this.queryWords];
+			this.eligibleQuery = new long[this.queryWords];
+		} else {
+			Arrays.fill(this.signatureOccurrences, 0, 64 * this.queryWords, 0L);
+		}
+		this.querySignature = 0L;
+		for (int i = 0; i < queryLength; i++) {
+			this.queryOccurrences[this.slot(this.query[i]) * this.queryWords + (i >>> 6)] |= 1L << i;
+			this.signatureOccurrences[(this.query[i] & 63) * this.queryWords + (i >>> 6)] |= 1L << i;
+			this.querySignature |= Trie.signature(this.query[i]);
+		}
+	}
+
+	/**
+	 * @param character the character
+	 * @return slot of the character in {@link #queryOccurrences} or {@code -1}, if
+	 *         the current query does not contain the character
+	 */
+	private int slot(char character) {
+		if (character <= 0xFF) {
+			return this.queryLatin1Slots[character] - 1;
+		} else {
+			int nonLatin1Slot = this.nonLatin1Slot(character);
+			return nonLatin1Slot < 0 ? -1 : this.queryNonLatin1SlotOffset + nonLatin1Slot;
+		}
+	}
+
+	/**
+	 * @param character a character outside of Latin-1
+	 * @return index of the character in {@link #queryNonLatin1Characters} or
+	 *         {@code -1}, if the current query does not contain the character
+	 */
+	private int nonLatin1Slot(char character) {
+		for (int i = 0; i < this.queryNonLatin1Count; i++) {
+			if (this.queryNonLatin1Characters[i] == character) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param character the character to check
+	 * @return {@code true}, if the current query contains the given character,
+	 *         otherwise {@code false}
+	 */
+	boolean contains(char character) {
+		return this.slot(character) >= 0;
+	}
+
+	/**
+	 * Ensures that {@link #termTargetLengths} is large enough for the given size.
+	 * The contained lengths will be retained.
+	 *
+	 * @param size required size of {@link #termTargetLengths}
+	 * @return {@link #termTargetLengths}
+	 */
+	int[] ensureTermTargetLengthsCapacity(int size) {
+		if (this.termTargetLengths.length < size) {
+			this.termTargetLengths = Arrays.copyOf(this.termTargetLengths,
+					Math.max(size, this.termTargetLengths.length * 2));
+		}
+		return this.termTargetLengths;
+	}
+
+	/**
+	 * Ensures that the frames are large enough for the given number of levels.
+	 * The content of the frames will be retained.
+	 *
+	 * @param levels required number of levels
+	 */
+	void ensureFramesCapacity(int levels) {
+		if (this.frameNodes.length < levels) {
+			int capacity = Math.max(levels, this.frameNodes.length * 2);
+			this.frameNodes = Arrays.copyOf(this.frameNodes, capacity);
+			this.frameTermTargetLengthsFrom = Arrays.copyOf(this.frameTermTargetLengthsFrom, capacity);
+			this.frameTermTargetLengthsTo = Arrays.copyOf(this.frameTermTargetLengthsTo, capacity);
+			this.frameMinCommonCharacters = Arrays.copyOf(this.frameMinCommonCharacters, capacity);
+			this.frameMinHalfTranspositions = Arrays.copyOf(this.frameMinHalfTranspositions, capacity);
+			this.frameMaxCommonPrefixSize = Arrays.copyOf(this.frameMaxCommonPrefixSize, capacity);
+			this.frameSaveCommonCharsQuery = Arrays.copyOf(this.frameSaveCommonCharsQuery, capacity);
+		}
+	}
+
+	/**
+	 * @param length number of bits
+	 * @return number of words required to store the given number of bits
+	 */
+	static int words(int length) {
+		return (length + 63) >>> 6;
+	}
+
+	/**
+	 * Marks a query character as assigned.
+	 *
+	 * @param index position of the query character
+	 */
+	void assign(int index) {
+		this.assignedQuery[index >>> 6] |= 1L << index;
+	}
+
+	/**
+	 * Marks a query character as not assigned.
+	 *
+	 * @param index position of the query character
+	 */
+	void unassign(int index) {
+		this.assignedQuery[index >>> 6] &= ~(1L << index);
+	}
+
+	/**
+	 * @param index position of the query character
+	 * @return {@code true}, if the query character is assigned, otherwise
+	 *         {@code false}
+	 */
+	boolean isAssigned(int index) {
+		return (this.assignedQuery[index >>> 6] & 1L << index) != 0;
+	}
+
+	/**
+	 * Returns the number of not assigned query characters in the given range.
+	 *
+	 * @param lowerBound first position of the range
+	 * @param upperBound last position of the range
+	 * @return number of not assigned query characters in the range
+	 */
+	int countUnassigned(int lowerBound, int upperBound) {
+		if (lowerBound > upperBound) {
+			return 0;
+		}
+		int lowerWord = lowerBound >>> 6;
+		int upperWord = upperBound >>> 6;
+		long lowerMask = -1L << lowerBound;
+		long upperMask = -1L >>> -(upperBound + 1);
+		if (lowerWord == upperWord) {
+			return Long.bitCount(~this.assignedQuery[lowerWord] & lowerMask & upperMask);
+		}
+		int result = Long.bitCount(~this.assignedQuery[lowerWord] & lowerMask);
+		for (int word = lowerWord + 1; word < upperWord; word++) {
+			result += Long.bitCount(~this.assignedQuery[word]);
+		}
+		return result + Long.bitCount(~this.assignedQuery[upperWord] & upperMask);
+	}
+
+	/**
+	 * Restricts the query characters that are considered by
+	 * {@link #countUnassignedEligible(int, int)} to the characters of the given
+	 * signature. Characters of the query outside of the signature can not become
+	 * assigned by any remaining character of the term.
+	 *
+	 * @param signature character signature of the remaining characters of the
+	 *                  term (see {@link Trie#signature(char)})
+	 * @return {@code true}, if any character of the query is outside of the
+	 *         signature, otherwise {@code false}
+	 */
+	boolean restrict(long signature) {
+		long included = this.querySignature & signature;
+		long excluded = this.querySignature & ~signature;
+		if (excluded == 0) {
+			// signature covers all characters of the query
+			return false;
+		}
+		// combine the positions of the smaller number of buckets
+		boolean combineIncluded = Long.bitCount(included) <= Long.bitCount(excluded);
+		long buckets = combineIncluded ? included : excluded;
+		for (int word = 0; word < this.queryWords; word++) {
+			long positions = 0L;
+			for (long remaining = buckets; remaining != 0; remaining &= remaining - 1) {
+				positions |= this.signatureOccurrences[Long.numberOfTrailingZeros(remaining) * this.queryWords + word];
+			}
+			this.eligibleQuery[word] = combineIncluded ? positions : ~positions;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of not assigned query characters in the given range that
+	 * are within the signature of the last call of {@link #restrict(long)}.
+	 *
+	 * @param lowerBound first position of the range
+	 * @param upperBound last position of the range
+	 * @return number of not assigned query characters in the range that are within
+	 *         the signature
+	 */
+	int countUnassignedEligible(int lowerBound, int upperBound) {
+		if (lowerBound > upperBound) {
+			return 0;
+		}
+		int lowerWord = lowerBound >>> 6;
+		int upperWord = upperBound >>> 6;
+		long lowerMask = -1L << lowerBound;
+		long upperMask = -1L >>> -(upperBound + 1);
+		if (lowerWord == upperWord) {
+			return Long.bitCount(~this.assignedQuery[lowerWord] & this.eligibleQuery[lowerWord] & lowerMask & upperMask);
+		}
+		int result = Long.bitCount(~this.assignedQuery[lowerWord] & this.eligibleQuery[lowerWord] & lowerMask);
+		for (int word = lowerWord + 1; word < upperWord; word++) {
+			result += Long.bitCount(~this.assignedQuery[word] & this.eligibleQuery[word]);
+		}
+		return result + Long.bitCount(~this.assignedQuery[upperWord] & this.eligibleQuery[upperWord] & upperMask);
+	}
+
+	/**
+	 * Returns the first not assigned character of the current query in the given
+	 * range that equals the given character. Only the positions of the given
+	 * character are checked, word by word.
+	 *
+	 * @param character  the character to search
+	 * @param lowerBound first position of the range
+	 * @param upperBound last position of the range
+	 * @return position of the first matching not assigned query character or
+	 *         {@code -1}, if there is no such character
+	 */
+	int findUnassigned(char character, int lowerBound, int upperBound) {
+		if (lowerBound > upperBound) {
+			return -1;
+		}
+		int slot = this.slot(character);
+		if (slot < 0) {
+			return -1;
+		}
+		int offset = slot * this.queryWords;
+		int upperWord = upperBound >>> 6;
+		long candidates = this.queryOccurrences[offset + (lowerBound >>> 6)] & ~this.assignedQuery[lowerBound >>> 6]
+				& -1L << lowerBound;
+		for (int word = lowerBound >>> 6;;) {
+			if (word == upperWord) {
+				candidates &= -1L >>> -(upperBound + 1);
+			}
+			if (candidates != 0) {
+				return word << 6 | Long.numberOfTrailingZeros(candidates);
+			}
+			if (++word > upperWord) {
+				return -1;
+			}
+			candidates = this.queryOccurrences[offset + word] & ~this.assignedQuery[word];
+		}
+	}
+
+	/**
+	 * Returns the first assigned query character equal to or after the given
+	 * position.
+	 *
+	 * @param fromIndex first position to check
+	 * @param upperBound last position to check
+	 * @return position of the first assigned query character or {@code -1}, if
+	 *         there is no such character
+	 */
+	int nextAssigned(int fromIndex, int upperBound) {
+		if (fromIndex > upperBound) {
+			return -1;
+		}
+		int upperWord = upperBound >>> 6;
+		long word = this.assignedQuery[fromIndex >>> 6] & -1L << fromIndex;
+		for (int wordIndex = fromIndex >>> 6;;) {
+			if (wordIndex == upperWord) {
+				word &= -1L >>> -(upperBound + 1);
+			}
+			if (word != 0) {
+				return wordIndex << 6 | Long.numberOfTrailingZeros(word);
+			}
+			if (++wordIndex > upperWord) {
+				return -1;
+			}
+			word = this.assignedQuery[wordIndex];
+		}
+	}
+
+	/**
+	 * Releases this {@link TraversalState} for reuse by the current thread.
+	 */
+	void release() {
+		this.inUse = false;
+	}
+}
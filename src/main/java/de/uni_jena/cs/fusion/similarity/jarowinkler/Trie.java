@@ -75,6 +75,37 @@ interface Trie<V> {
 		}
 	}
 
+	/**
+	 * Returns the character signature of a character: a bitmap of 64 buckets
+	 * with the bucket of the character set. Equal characters have equal
+	 * signatures, so two strings can not have a character in common, if their
+	 * signatures are disjoint.
+	 * 
+	 * @param character the character
+	 * @return signature of the character
+	 */
+	static long signature(char character) {
+		return 1L << (character & 63);
+	}
+
+	/**
+	 * Returns the character signature of a part of a {@link String}, that is the
+	 * union of the signatures of its characters.
+	 * 
+	 * @param string    the {@link String}
+	 * @param fromIndex first position of the part
+	 * @return signature of the characters of {@code string} from
+	 *         {@code fromIndex} on
+	 * @see #signature(char)
+	 */
+	static long signature(String string, int fromIndex) {
+		long signature = 0L;
+		for (int i = fromIndex; i < string.length(); i++) {
+			signature |= signature(string.charAt(i));
+		}
+		return signature;
+	}
+
 	/**
 	 * Returns an {@link Iterator} of the child trie nodes of this trie node
 	 * 
@@ -108,6 +139,15 @@ interface Trie<V> {
 	 */
 	int depth();
 
+	/**
+	 * Returns the first child trie node of this trie node. In contrast to
+	 * {@link #childrenIterator()}, this does not require any allocation.
+	 * 
+	 * @return first child trie node of this trie node or {@code null}, if this
+	 *         trie node has no children
+	 */
+	Trie<V> firstChild();
+
 	/**
 	 * Returns {@code true}, if the string represented by the current node is
 	 * contained in the trie, otherwise {@code false}.
@@ -131,9 +171,36 @@ interface Trie<V> {
 	 * @return the length of the key of this trie node
 	 */
 	default int keyLength() {
-		return this.depth() + this.symbol().length();
+		return this.depth() + this.symbolLength();
 	}
 
+	/**
+	 * Returns the smallest contained key length that is equal to or greater than
+	 * the given length.
+	 * 
+	 * @param fromLength minimum key length to return
+	 * @return smallest contained key length equal to or greater than
+	 *         {@code fromLength} or {@code -1}, if there is no such length
+	 */
+	default int nextContainedLength(int fromLength) {
+		int result = -1;
+		for (int length : this.containedLengths()) {
+			if (length >= fromLength && (result == -1 || length < result)) {
+				result = length;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the next sibling trie node of this trie node. In contrast to
+	 * {@link #childrenIterator()}, this does not require any allocation.
+	 * 
+	 * @return next sibling trie node of this trie node or {@code null}, if this
+	 *         trie node is the last child of its parent
+	 */
+	Trie<V> nextSibling();
+
 	/**
 	 * Returns an {@link Iterator} of the populated trie nodes.
 	 * 
@@ -145,6 +212,34 @@ interface Trie<V> {
 
 	int size();
 
+	/**
+	 * Returns the character signature (see {@link #signature(char)}) of the
+	 * characters of the contained keys that follow the key of this trie node,
+	 * which are the characters of the symbols of all descendants of this trie
+	 * node. The signature might contain further characters, e.g. after the
+	 * removal of keys.
+	 * 
+	 * @return signature of the characters following the key of this trie node
+	 */
+	default long suffixSignature() {
+		// all characters
+		return -1L;
+	}
+
+	/**
+	 * @param string a {@link String}
+	 * @return {@code true}, if all characters of the {@link String} are Latin-1
+	 *         characters, otherwise {@code false}
+	 */
+	static boolean isLatin1(String string) {
+		for (int i = 0; i < string.length(); i++) {
+			if (string.charAt(i) > 0xFF) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Returns the symbol of this trie node that is a suffix of its key.
 	 * 
@@ -152,6 +247,43 @@ interface Trie<V> {
 	 */
 	String symbol();
 
+	/**
+	 * Returns the character at the given position of the symbol of this trie node.
+	 * This might be faster than calling {@code symbol().charAt(index)}.
+	 * 
+	 * @param index position of the character in the symbol
+	 * @return character at the given position of the symbol
+	 */
+	default char symbolChar(int index) {
+		return this.symbol().charAt(index);
+	}
+
+	/**
+	 * Returns the length of the symbol of this trie node. This might be faster
+	 * than calling {@code symbol().length()}.
+	 * 
+	 * @return length of the symbol of this trie node
+	 */
+	default int symbolLength() {
+		return this.symbol().length();
+	}
+
+	/**
+	 * Tests if a region of the given {@link String} equals the beginning of the
+	 * symbol of this trie node. This might be faster than calling
+	 * {@code string.regionMatches(offset, symbol(), 0, length)}.
+	 * 
+	 * @param string {@link String} to compare
+	 * @param offset position of the region in the given {@link String}
+	 * @param length number of characters to compare
+	 * @return {@code true}, if the region of the given {@link String} equals the
+	 *         first {@code length} characters of the symbol, otherwise
+	 *         {@code false}
+	 */
+	default boolean symbolRegionMatches(String string, int offset, int length) {
+		return string.regionMatches(offset, this.symbol(), 0, length);
+	}
+
 	/**
 	 * Returns the value of this trie node. Throws {@link NoSuchElementException},
 	 * if this node is not populated.
@@ -20,10 +20,13 @@ package de.uni_jena.cs.fusion.similarity.jarowinkler;
  * #L%
  */
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
@@ -43,10 +46,16 @@ class TrieMap<V> implements Trie<V> {
 	// content
 	private V value = null;
 	private String symbol = "";
+	/**
+	 * Symbol in ISO-8859-1 encoding, replacing {@link #symbol}, if the symbols of
+	 * the whole trie are Latin-1.
+	 */
+	private byte[] latin1Symbol = null;
 	private boolean contained = false;
 
 	// navigation
 	private TrieMap<V> parent = null;
+	private TrieMap<V> sibling = null;
 	private List<TrieMap<V>> children = new ArrayList<TrieMap<V>>();
 	private List<? extends Trie<V>> childrenUnmodifiable = Collections.unmodifiableList(children);
 
@@ -54,12 +63,14 @@ class TrieMap<V> implements Trie<V> {
 	private int size = 0;
 	private int depth = 0;
 	private BitSet lengths = new BitSet();
+	private long suffixSignature = 0L;
 
 	public TrieMap() {
 	}
 
 	public TrieMap(Map<String, V> m) {
 		this.putAll(m);
+		this.compactSymbols();
 	}
 
 	@Override
@@ -88,6 +99,11 @@ class TrieMap<V> implements Trie<V> {
 		return this.depth;
 	}
 
+	@Override
+	public TrieMap<V> firstChild() {
+		return this.children.isEmpty() ? null : this.children.get(0);
+	}
+
 	V get(Object key) {
 		if (key instanceof String) {
 			TrieMap<V> node = this.getNode((String) key);
@@ -107,7 +123,8 @@ class TrieMap<V> implements Trie<V> {
 	 */
 	private TrieMap<V> getNode(String key) {
 		TrieMap<V> candidate = getClosestNode(key);
-		if (candidate.keyLength() == this.depth() + key.length() && key.endsWith(candidate.symbol())) {
+		if (candidate.keyLength() == this.depth() + key.length() && candidate.symbolRegionMatches(key,
+				key.length() - candidate.symbolLength(), candidate.symbolLength())) {
 			return candidate;
 		} else {
 			return null;
@@ -137,22 +154,24 @@ class TrieMap<V> implements Trie<V> {
 	 * @return closest node to the given key
 	 */
 	private TrieMap<V> getClosestNode(String key) {
-		if (key.startsWith(this.key())) {
-			key = key.substring(this.keyLength());
+		if (this.keyLength() == 0 || key.startsWith(this.key())) {
+			// position of the remaining key
+			int offset = this.keyLength();
 			if (this.children.isEmpty()) {
 				return this;
-			} else if (key.length() == 0) {
+			} else if (offset == key.length()) {
 				return this;
 			} else {
-				Iterator<TrieMap<V>> iterator = this.children.iterator();
-				while (iterator.hasNext()) {
-					TrieMap<V> current = iterator.next();
-					if (current.symbol().charAt(0) == key.charAt(0)) {
+				List<TrieMap<V>> children = this.children;
+				int index = 0;
+				while (index < children.size()) {
+					TrieMap<V> current = children.get(index++);
+					if (current.symbolChar(0) == key.charAt(offset)) {
 						// current has appropriate first char
-						if (key.startsWith(current.symbol())) {
+						if (current.symbolRegionMatches(key, offset, current.symbolLength())) {
 							// current has appropriate symbol
-							key = key.substring(current.symbol().length());
-							if (key.length() == 0) {
+							offset += current.symbolLength();
+							if (offset == key.length()) {
 								// current node symbol equals given suffix
 								return current;
 							} else {
@@ -164,19 +183,20 @@ class TrieMap<V> implements Trie<V> {
 								} else {
 									// current node has children
 
-									// start next level iterator
-									iterator = current.children.iterator();
+									// continue with next level
+									children = current.children;
+									index = 0;
 								}
 							}
 						} else {
 							// current has appropriate first char but not symbol
 							return current;
 						}
-					} else if (current.symbol().charAt(0) > key.charAt(0)) {
+					} else if (current.symbolChar(0) > key.charAt(offset)) {
 						// parent not contains child with appropriate first char
 						return current.parent;
 					} else {
-						if (!iterator.hasNext()) {
+						if (index == children.size()) {
 							return current.parent;
 						}
 						// else continue loop
@@ -196,11 +216,45 @@ class TrieMap<V> implements Trie<V> {
 
 	@Override
 	public String key() {
-		if (parent == null) {
-			return this.symbol;
-		} else {
-			return this.parent.key() + this.symbol;
+		// collect symbols bottom up to avoid recursion proportional to the depth
+		char[] key = new char[this.keyLength()];
+		for (TrieMap<V> node = this; node != null; node = node.parent) {
+			if (node.latin1Symbol != null) {
+				for (int i = 0; i < node.latin1Symbol.length; i++) {
+					key[node.depth + i] = (char) (node.latin1Symbol[i] & 0xFF);
+				}
+			} else {
+				node.symbol.getChars(0, node.symbol.length(), key, node.depth);
+			}
 		}
+		return new String(key);
+	}
+
+	/**
+	 * Updates the sibling references of the children after a change of the
+	 * children list.
+	 */
+	private void linkChildren() {
+		TrieMap<V> previous = null;
+		for (TrieMap<V> child : this.children) {
+			if (previous != null) {
+				previous.sibling = child;
+			}
+			previous = child;
+		}
+		if (previous != null) {
+			previous.sibling = null;
+		}
+	}
+
+	@Override
+	public int nextContainedLength(int fromLength) {
+		return this.lengths.nextSetBit(fromLength);
+	}
+
+	@Override
+	public TrieMap<V> nextSibling() {
+		return this.sibling;
 	}
 
 	V put(String key, V value) {
@@ -227,7 +281,7 @@ class TrieMap<V> implements Trie<V> {
 	private TrieMap<V> addSibling(String key, V value) {
 		StringBuilder prefix = new StringBuilder(this.parent.key());
 		for (int i = this.depth(); i < Math.min(this.keyLength(), key.length())
-				&& key.charAt(i) == this.symbol().charAt(i - this.depth()); i++) {
+				&& key.charAt(i) == this.symbolChar(i - this.depth()); i++) {
 			prefix.append(key.charAt(i));
 		}
 		return this.splitNode(prefix.toString(), null, false).addChild(key, value, true);
@@ -248,13 +302,15 @@ class TrieMap<V> implements Trie<V> {
 
 		// update new node
 		node.children.add(this);
+		node.linkChildren();
 		node.size += this.size;
 		node.lengths.or(this.lengths);
 
 		// update this
 		this.depth = node.keyLength();
-		this.symbol = this.symbol.substring(node.symbol.length());
+		this.setSymbol(this.symbol().substring(node.symbolLength()));
 		this.parent = node;
+		node.suffixSignature = Trie.signature(this.symbol(), 0) | this.suffixSignature;
 
 		return node;
 	}
@@ -262,12 +318,13 @@ class TrieMap<V> implements Trie<V> {
 	private TrieMap<V> addChild(String key, V value, boolean contained) {
 		// create node
 		TrieMap<V> node = new TrieMap<V>();
-		node.symbol = key.substring(this.keyLength());
+		node.setSymbol(key.substring(this.keyLength()));
 		node.value = value;
 		node.contained = contained;
 		node.parent = this;
 		node.depth = this.keyLength();
 		node.updateSizeAndLength();
+		node.updateSuffixSignature();
 
 		// add node to parent
 		if (this.children.isEmpty()) {
@@ -276,7 +333,7 @@ class TrieMap<V> implements Trie<V> {
 			ListIterator<TrieMap<V>> siblings = this.children.listIterator();
 			while (siblings.hasNext()) {
 				TrieMap<V> sibling = siblings.next();
-				if (sibling.symbol().charAt(0) > node.symbol.charAt(0)) {
+				if (sibling.symbolChar(0) > node.symbolChar(0)) {
 					siblings.previous();
 					siblings.add(node);
 					break;
@@ -286,6 +343,7 @@ class TrieMap<V> implements Trie<V> {
 				}
 			}
 		}
+		this.linkChildren();
 
 		return node;
 	}
@@ -301,6 +359,18 @@ class TrieMap<V> implements Trie<V> {
 		}
 	}
 
+	/**
+	 * Adds the characters of the symbols of this node and its descendants to the
+	 * suffix signatures of its parents.
+	 */
+	private void updateSuffixSignature() {
+		long signature = this.suffixSignature;
+		for (TrieMap<V> node = this; node.parent != null; node = node.parent) {
+			signature |= Trie.signature(node.symbol(), 0);
+			node.parent.suffixSignature |= signature;
+		}
+	}
+
 	void putAll(Map<? extends String, ? extends V> m) {
 		if (m instanceof SortedMap<?, ?>) {
 			SortedMap<? extends String, ? extends V> sorted = (SortedMap<? extends String, ? extends V>) m;
@@ -321,11 +391,85 @@ class TrieMap<V> implements Trie<V> {
 		return this.size;
 	}
 
+	@Override
+	public long suffixSignature() {
+		return this.suffixSignature;
+	}
+
 	@Override
 	public String symbol() {
+		if (this.latin1Symbol != null) {
+			return new String(this.latin1Symbol, StandardCharsets.ISO_8859_1);
+		}
 		return this.symbol;
 	}
 
+	@Override
+	public char symbolChar(int index) {
+		if (this.latin1Symbol != null) {
+			return (char) (this.latin1Symbol[index] & 0xFF);
+		}
+		return this.symbol.charAt(index);
+	}
+
+	@Override
+	public int symbolLength() {
+		if (this.latin1Symbol != null) {
+			return this.latin1Symbol.length;
+		}
+		return this.symbol.length();
+	}
+
+	@Override
+	public boolean symbolRegionMatches(String string, int offset, int length) {
+		if (this.latin1Symbol == null) {
+			return string.regionMatches(offset, this.symbol, 0, length);
+		}
+		if (offset < 0 || length > this.latin1Symbol.length || offset > string.length() - length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (string.charAt(offset + i) != (char) (this.latin1Symbol[i] & 0xFF)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param symbol new symbol of this node
+	 */
+	private void setSymbol(String symbol) {
+		this.symbol = symbol;
+		this.latin1Symbol = null;
+	}
+
+	/**
+	 * Replaces the symbols of this trie by their ISO-8859-1 encoding, if all
+	 * characters of the symbols are Latin-1, which halves the memory of the
+	 * symbol characters on Java 8 and saves a {@link String} per node.
+	 */
+	private void compactSymbols() {
+		Deque<TrieMap<V>> nodes = new ArrayDeque<TrieMap<V>>();
+		List<TrieMap<V>> visited = new ArrayList<TrieMap<V>>();
+		nodes.push(this);
+		while (!nodes.isEmpty()) {
+			TrieMap<V> node = nodes.pop();
+			if (!Trie.isLatin1(node.symbol)) {
+				// keep char symbols
+				return;
+			}
+			visited.add(node);
+			for (TrieMap<V> child : node.children) {
+				nodes.push(child);
+			}
+		}
+		for (TrieMap<V> node : visited) {
+			node.latin1Symbol = node.symbol.getBytes(StandardCharsets.ISO_8859_1);
+			node.symbol = null;
+		}
+	}
+
 	@Override
 	public V value() throws NoSuchElementException {
 		if (this.isPopulated()) {
@@ -20,10 +20,13 @@ package de.uni_jena.cs.fusion.similarity.jarowinkler;
  * #L%
  */
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -43,6 +46,12 @@ class TrieSet implements Trie<String> {
 	protected TrieSet child = null;
 	protected TrieSet parent = null;
 	protected String symbol = "";
+	/**
+	 * Symbol in ISO-8859-1 encoding, replacing {@link #symbol}, if the symbols of
+	 * the whole trie are Latin-1.
+	 */
+	protected byte[] latin1Symbol = null;
+	protected long suffixSignature = 0L;
 
 	TrieSet() {
 	}
@@ -55,10 +64,11 @@ class TrieSet implements Trie<String> {
 
 	public TrieSet(Collection<? extends String> c) {
 		this.addAll(c);
+		this.compactSymbols();
 	}
 
 	private TrieSet(String symbol, BitSet lengths, boolean contained, int size, int depth,
-			TrieSet sibling, TrieSet child, TrieSet parent) {
+			TrieSet sibling, TrieSet child, TrieSet parent, long suffixSignature) {
 		this.child = child;
 		this.contained = contained;
 		this.depth = depth;
@@ -67,6 +77,7 @@ class TrieSet implements Trie<String> {
 		this.parent = parent;
 		this.sibling = sibling;
 		this.size = size;
+		this.suffixSignature = suffixSignature;
 	}
 
 	private boolean add() {
@@ -83,10 +94,10 @@ class TrieSet implements Trie<String> {
 	}
 
 	boolean add(String e) {
-		int commonPrefixLength = commonLength(this.symbol, e);
-		if (commonPrefixLength == 0 && this.symbol.length() != 0 && e.length() != 0) {
+		int commonPrefixLength = commonLength(this.symbol(), e);
+		if (commonPrefixLength == 0 && this.symbolLength() != 0 && e.length() != 0) {
 			// this and e are siblings
-			if (symbol.charAt(0) < e.charAt(0)) {
+			if (this.symbolChar(0) < e.charAt(0)) {
 				// symbol[0] < e[0]: e after symbol
 				return this.addSibling(e);
 			} else {
@@ -95,7 +106,7 @@ class TrieSet implements Trie<String> {
 				return this.add();
 			}
 		} else {
-			if (commonPrefixLength == this.symbol.length()) {
+			if (commonPrefixLength == this.symbolLength()) {
 				if (commonPrefixLength == e.length()) {
 					// e equals symbol
 					return this.add();
@@ -192,7 +203,7 @@ class TrieSet implements Trie<String> {
 
 							// iterate to relevant child
 							while (currentChild.sibling != null) {
-								if (currentChild.sibling.symbol.charAt(0) > currentElement.charAt(0)) {
+								if (currentChild.sibling.symbolChar(0) > currentElement.charAt(0)) {
 									// symbol of next child of current node is
 									// greater than currentElement
 									break;
@@ -200,11 +211,11 @@ class TrieSet implements Trie<String> {
 								currentChild = currentChild.sibling;
 							}
 							// now the current child is the relevant child
-							if (currentChild != null && currentChild.symbol.charAt(0) == currentElement.charAt(0)) {
+							if (currentChild != null && currentChild.symbolChar(0) == currentElement.charAt(0)) {
 								// element must be inserted at the current child
-								int commonPrefixLength = commonLength(currentElement, currentChild.symbol);
+								int commonPrefixLength = commonLength(currentElement, currentChild.symbol());
 
-								if (commonPrefixLength != currentChild.symbol.length()) {
+								if (commonPrefixLength != currentChild.symbolLength()) {
 									// element not starts with symbol of current
 									// child
 									// -> element must be a sibling branch of
@@ -244,6 +255,7 @@ class TrieSet implements Trie<String> {
 						for (TrieSet trie : nodeStack) {
 							trie.size++;
 							trie.lengths.set(currentElementLength);
+							trie.suffixSignature |= Trie.signature(prevElement, trie.keyLength());
 						}
 						collectionChanged = true;
 					}
@@ -263,6 +275,7 @@ class TrieSet implements Trie<String> {
 		if (this.child.add(e)) {
 			this.size++;
 			this.lengths.set(e.length() + this.depth);
+			this.suffixSignature |= Trie.signature(e, 0);
 			return true;
 		} else {
 			return false;
@@ -326,8 +339,8 @@ class TrieSet implements Trie<String> {
 	}
 
 	private TrieSet copy() {
-		return new TrieSet(this.symbol, this.lengths, this.contained, this.size, this.depth, this.sibling,
-				this.child, this.parent);
+		return new TrieSet(this.symbol(), this.lengths, this.contained, this.size, this.depth, this.sibling,
+				this.child, this.parent, this.suffixSignature);
 	}
 
 	@Override
@@ -335,15 +348,23 @@ class TrieSet implements Trie<String> {
 		return this.depth;
 	}
 
+	@Override
+	public TrieSet firstChild() {
+		return this.child;
+	}
+
 	private TrieSet getNode(String key) {
+		// position of the remaining key
+		int offset = 0;
+
 		// catch special cases
 		if (this.depth != 0) {
 			// this is not the root node
 			if (key.startsWith(this.key())) {
 				// this.key is prefix of key = key can be contained
 
-				// remove prefix from key
-				key = key.substring(this.depth);
+				// skip prefix of key
+				offset = this.depth;
 			} else {
 				// this.key is not prefix of key = key can not be contained
 				return null;
@@ -352,27 +373,26 @@ class TrieSet implements Trie<String> {
 
 		// regular case
 		TrieSet currentNode = this;
-		while (key.length() != 0) {
-			if (key.length() >= currentNode.symbol.length()
-					&& key.substring(0, currentNode.symbol.length()).equals(currentNode.symbol)) {
+		while (offset != key.length()) {
+			if (currentNode.symbolRegionMatches(key, offset, currentNode.symbolLength())) {
 
-				// remove prefix from key
-				key = key.substring(currentNode.symbol.length());
+				// skip prefix of remaining key
+				offset += currentNode.symbolLength();
 
-				if (key.length() != 0) {
+				if (offset != key.length()) {
 					// did not reach the target node
 
 					// get relevant child node
-					Iterator<Trie<String>> childrenIterator = currentNode.childrenIterator();
+					TrieSet child = currentNode.child;
 					currentNode = null;
-					while (childrenIterator.hasNext()) {
-						TrieSet child = (TrieSet) childrenIterator.next();
-						if (child.symbol.charAt(0) == key.charAt(0)) {
+					while (child != null) {
+						if (child.symbolChar(0) == key.charAt(offset)) {
 							// child is the relevant child
 
 							currentNode = child;
 							break;
 						}
+						child = child.sibling;
 					}
 
 					if (currentNode == null) {
@@ -399,11 +419,28 @@ class TrieSet implements Trie<String> {
 
 	@Override
 	public String key() {
-		if (parent == null) {
-			return this.symbol;
-		} else {
-			return this.parent.key() + this.symbol;
+		// collect symbols bottom up to avoid recursion proportional to the depth
+		char[] key = new char[this.keyLength()];
+		for (TrieSet node = this; node != null; node = node.parent) {
+			if (node.latin1Symbol != null) {
+				for (int i = 0; i < node.latin1Symbol.length; i++) {
+					key[node.depth + i] = (char) (node.latin1Symbol[i] & 0xFF);
+				}
+			} else {
+				node.symbol.getChars(0, node.symbol.length(), key, node.depth);
+			}
 		}
+		return new String(key);
+	}
+
+	@Override
+	public int nextContainedLength(int fromLength) {
+		return this.lengths.nextSetBit(fromLength);
+	}
+
+	@Override
+	public TrieSet nextSibling() {
+		return this.sibling;
 	}
 
 	public boolean remove(Object o) {
@@ -489,8 +526,9 @@ class TrieSet implements Trie<String> {
 		this.child = this.copy();
 		this.contained = false;
 		// this.depth does not change
-		this.symbol = this.symbol.substring(0, i);
+		this.setSymbol(this.symbol().substring(0, i));
 		this.lengths = (BitSet) this.lengths.clone();
+		this.suffixSignature |= Trie.signature(this.child.symbol(), i);
 		// this.parent does not change
 		// this.sibling does not change
 		// this.size does not change
@@ -498,7 +536,7 @@ class TrieSet implements Trie<String> {
 		// this.child.child does not change
 		// this.child.contained does not change
 		this.child.depth = this.depth + i;
-		this.child.symbol = this.child.symbol.substring(i);
+		this.child.setSymbol(this.child.symbol().substring(i));
 		// this.child.lengths does not change
 		this.child.sibling = null;
 		this.child.parent = this; // TODO also update siblings
@@ -524,8 +562,9 @@ class TrieSet implements Trie<String> {
 		this.child = null;
 		this.contained = false;
 		// this.depth does not change
-		this.symbol = e;
+		this.setSymbol(e);
 		this.lengths = new BitSet();
+		this.suffixSignature = 0L;
 		// this.parent does not change
 		this.size = 0;
 	}
@@ -604,11 +643,85 @@ class TrieSet implements Trie<String> {
 		return this.size;
 	}
 
+	@Override
+	public long suffixSignature() {
+		return this.suffixSignature;
+	}
+
 	@Override
 	public String symbol() {
+		if (this.latin1Symbol != null) {
+			return new String(this.latin1Symbol, StandardCharsets.ISO_8859_1);
+		}
 		return this.symbol;
 	}
 
+	@Override
+	public char symbolChar(int index) {
+		if (this.latin1Symbol != null) {
+			return (char) (this.latin1Symbol[index] & 0xFF);
+		}
+		return this.symbol.charAt(index);
+	}
+
+	@Override
+	public int symbolLength() {
+		if (this.latin1Symbol != null) {
+			return this.latin1Symbol.length;
+		}
+		return this.symbol.length();
+	}
+
+	@Override
+	public boolean symbolRegionMatches(String string, int offset, int length) {
+		if (this.latin1Symbol == null) {
+			return string.regionMatches(offset, this.symbol, 0, length);
+		}
+		if (offset < 0 || length > this.latin1Symbol.length || offset > string.length() - length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (string.charAt(offset + i) != (char) (this.latin1Symbol[i] & 0xFF)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param symbol new symbol of this node
+	 */
+	private void setSymbol(String symbol) {
+		this.symbol = symbol;
+		this.latin1Symbol = null;
+	}
+
+	/**
+	 * Replaces the symbols of this trie by their ISO-8859-1 encoding, if all
+	 * characters of the symbols are Latin-1, which halves the memory of the
+	 * symbol characters on Java 8 and saves a {@link String} per node.
+	 */
+	private void compactSymbols() {
+		Deque<TrieSet> nodes = new ArrayDeque<TrieSet>();
+		List<TrieSet> visited = new ArrayList<TrieSet>();
+		nodes.push(this);
+		while (!nodes.isEmpty()) {
+			TrieSet node = nodes.pop();
+			if (!Trie.isLatin1(node.symbol)) {
+				// keep char symbols
+				return;
+			}
+			visited.add(node);
+			for (TrieSet child = node.child; child != null; child = child.sibling) {
+				nodes.push(child);
+			}
+		}
+		for (TrieSet node : visited) {
+			node.latin1Symbol = node.symbol.getBytes(StandardCharsets.ISO_8859_1);
+			node.symbol = null;
+		}
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder("[");
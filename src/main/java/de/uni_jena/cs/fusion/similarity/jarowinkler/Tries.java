@@ -55,6 +55,11 @@ class Tries {
 			return 0;
 		}
 
+		@Override
+		public Trie<V> firstChild() {
+			return null;
+		}
+
 		@Override
 		public boolean isPopulated() {
 			return false;
@@ -70,11 +75,21 @@ class Tries {
 			return 0;
 		}
 
+		@Override
+		public Trie<V> nextSibling() {
+			return null;
+		}
+
 		@Override
 		public int size() {
 			return 0;
 		}
 
+		@Override
+		public long suffixSignature() {
+			return 0L;
+		}
+
 		@Override
 		public String symbol() {
 			return "";
@@ -148,6 +163,11 @@ class Tries {
 			}
 		}
 
+		@Override
+		public Trie<V> firstChild() {
+			return null;
+		}
+
 		@Override
 		public boolean isPopulated() {
 			return true;
@@ -163,11 +183,21 @@ class Tries {
 			return key.length();
 		}
 
+		@Override
+		public Trie<V> nextSibling() {
+			return null;
+		}
+
 		@Override
 		public int size() {
 			return 1;
 		}
 
+		@Override
+		public long suffixSignature() {
+			return 0L;
+		}
+
 		@Override
 		public String symbol() {
 			return this.key;
@@ -202,6 +232,11 @@ class Tries {
 			return 0;
 		}
 
+		@Override
+		public Trie<String> firstChild() {
+			return null;
+		}
+
 		@Override
 		public boolean isPopulated() {
 			return true;
@@ -222,11 +257,21 @@ class Tries {
 			return element.length();
 		}
 
+		@Override
+		public Trie<String> nextSibling() {
+			return null;
+		}
+
 		@Override
 		public int size() {
 			return 1;
 		}
 
+		@Override
+		public long suffixSignature() {
+			return 0L;
+		}
+
 		@Override
 		public String symbol() {
 			return this.element;
@@ -0,0 +1,84 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class JaroWinklerBatchMatcherTest {
+
+	private static String[] randomStrings(Random random, int count, int maxLength) {
+		String[] strings = new String[count];
+		for (int i = 0; i < count; i++) {
+			StringBuilder string = new StringBuilder();
+			int length = 1 + random.nextInt(maxLength);
+			for (int j = 0; j < length; j++) {
+				string.append((char) ('a' + random.nextInt(4)));
+			}
+			strings[i] = string.toString();
+		}
+		return strings;
+	}
+
+	@Test
+	public void apply() throws InterruptedException {
+		Random random = new Random(0);
+		JaroWinklerSimilarity<String> jws = JaroWinklerSimilarity.with(Arrays.asList(randomStrings(random, 300, 20)),
+				0.8);
+		String[] queries = randomStrings(random, 100, 20);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (JaroWinklerBatchMatcher<String> matcher : Arrays.asList(new JaroWinklerBatchMatcher<>(jws),
+					new JaroWinklerBatchMatcher<>(jws, executor, 3, 1),
+					new JaroWinklerBatchMatcher<>(jws, executor, 2, 7),
+					new JaroWinklerBatchMatcher<>(jws, executor, 4, 1000))) {
+				List<Map<String, Double>> results = matcher.apply(queries);
+				assertEquals(queries.length, results.size());
+				for (int i = 0; i < queries.length; i++) {
+					assertEquals(jws.apply(queries[i]), results.get(i));
+				}
+				results = matcher.apply(Arrays.stream(queries), 0.9);
+				assertEquals(queries.length, results.size());
+				for (int i = 0; i < queries.length; i++) {
+					assertEquals(jws.apply(queries[i], 0.9), results.get(i));
+				}
+				assertEquals(0, matcher.apply(new String[0]).size());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidChunkSize() {
+		new JaroWinklerBatchMatcher<>(JaroWinklerSimilarity.with(Arrays.asList("a"), 0.8),
+				ForkJoinPool.commonPool(), 1, 0);
+	}
+}
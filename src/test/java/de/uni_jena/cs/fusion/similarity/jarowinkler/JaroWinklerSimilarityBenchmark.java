@@ -33,6 +33,7 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.zip.GZIPInputStream;
@@ -43,7 +44,6 @@ import java.util.zip.GZIPInputStream;
 public class JaroWinklerSimilarityBenchmark {
     private static final String DATASET_PATH = "dataset1/dbpedia_2016-10_persondata_en_names_unique_sorted.gz";
     private static final int QUERIES_SAMPLE_SIZE = 1000;
-    private static final double SIMILARITY_THRESHOLD = 0.95;
 
     public static void main(String[] args) throws Exception {
         Options opt = new OptionsBuilder()
@@ -59,19 +59,47 @@ public class JaroWinklerSimilarityBenchmark {
     @Measurement(iterations = 3)
     public void benchmark(Blackhole bh, BenchmarkState state) {
         for (String query : state.queriesSample) {
-            bh.consume(state.jaroWinklerSimilarity.apply(query));
+            bh.consume(state.jaroWinklerSimilarity.apply(query, state.threshold));
+        }
+    }
+
+    /**
+     * Matches a single query per invocation, so that the {@link GCProfiler} metric
+     * {@code gc.alloc.rate.norm} reports the allocated bytes per query.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 3)
+    public void singleQuery(Blackhole bh, BenchmarkState state, QueryState query) {
+        bh.consume(state.jaroWinklerSimilarity.apply(query.next(state.queriesSample), state.threshold));
+    }
+
+    @State(Scope.Thread)
+    public static class QueryState {
+        private int index = 0;
+
+        String next(List<String> queries) {
+            this.index = (this.index + 1) % queries.size();
+            return queries.get(this.index);
         }
     }
 
     @State(Scope.Benchmark)
     public static class BenchmarkState {
+        @Param({"0.75", "0.8", "0.85", "0.9", "0.95"})
+        private double threshold;
+        @Param({"TRIE", "SCAN", "QGRAM", "AUTO"})
+        private JaroWinklerSimilarity.Engine engine;
         private JaroWinklerSimilarity jaroWinklerSimilarity;
         private List<String> queriesSample;
 
         @Setup
         public void setup() {
             List<String> dataset = loadDataset();
-            this.jaroWinklerSimilarity = JaroWinklerSimilarity.with(dataset, SIMILARITY_THRESHOLD);
+            this.jaroWinklerSimilarity = JaroWinklerSimilarity.with(dataset, this.threshold);
+            this.jaroWinklerSimilarity.setEngine(this.engine);
             this.queriesSample = IntStream.range(0, dataset.size() / QUERIES_SAMPLE_SIZE)
                     .mapToObj(i -> dataset.get(i * QUERIES_SAMPLE_SIZE))
                     .collect(Collectors.toList());
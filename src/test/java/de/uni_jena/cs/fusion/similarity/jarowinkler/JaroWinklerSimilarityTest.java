@@ -21,16 +21,30 @@ package de.uni_jena.cs.fusion.similarity.jarowinkler;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.StringWriter;
+import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Random;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import org.junit.Test;
 
@@ -96,6 +110,651 @@ public class JaroWinklerSimilarityTest {
 		}
 	}
 
+	@Test
+	public void applyConsistentWithOf() {
+		Random random = new Random(0);
+		for (int testCase = 0; testCase < 20; testCase++) {
+			List<String> terms = randomStrings(random, 100, testCase % 2 == 0 ? 12 : 70);
+			JaroWinklerSimilarity<String> jws = JaroWinklerSimilarity.with(terms, 0.0);
+			for (String query : randomStrings(random, 10, testCase % 2 == 0 ? 12 : 70)) {
+				for (double threshold : new double[] { 0.0, 0.7, 0.8, 0.9, 0.95 }) {
+					Map<String, Double> result = jws.apply(query, threshold);
+					for (String term : terms) {
+						String caseDescription = "Query: \"" + query + "\", Term: \"" + term + "\", Threshold: "
+								+ threshold;
+						assertEquals(caseDescription, JaroWinklerSimilarity.of(term, query, threshold),
+								result.get(term));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void score() {
+		Random random = new Random(0);
+		for (int testCase = 0; testCase < 20; testCase++) {
+			List<String> terms = randomStrings(random, 100, testCase % 2 == 0 ? 12 : 150);
+			JaroWinklerSimilarity<String> jws = JaroWinklerSimilarity.with(terms, 0.0);
+			for (String query : randomStrings(random, 10, testCase % 2 == 0 ? 12 : 150)) {
+				Map<String, Double> result = jws.apply(query, 0.0);
+				for (String term : terms) {
+					String caseDescription = "Query: \"" + query + "\", Term: \"" + term + "\"";
+					double expected = result.get(term);
+					assertEquals(caseDescription, expected, JaroWinklerSimilarity.score(term, query), 0.0);
+					for (double threshold : new double[] { 0.7, 0.8, 0.9, 0.95 }) {
+						assertEquals(caseDescription + ", Threshold: " + threshold,
+								expected >= threshold ? expected : JaroWinklerSimilarity.BELOW_THRESHOLD,
+								JaroWinklerSimilarity.score(term, query, threshold), 0.0);
+					}
+				}
+			}
+		}
+		assertEquals(0.0, JaroWinklerSimilarity.score("", ""), 0.0);
+		assertEquals(JaroWinklerSimilarity.BELOW_THRESHOLD, JaroWinklerSimilarity.score("", "", 0.5), 0.0);
+	}
+
+	@Test
+	public void scoreCandidates() {
+		Random random = new Random(0);
+		for (int testCase = 0; testCase < 20; testCase++) {
+			String[] candidates = randomStrings(random, 100, testCase % 2 == 0 ? 12 : 150).toArray(new String[0]);
+			double[] out = new double[candidates.length + 1];
+			out[candidates.length] = 2.0;
+			for (String query : randomStrings(random, 10, testCase % 2 == 0 ? 12 : 150)) {
+				for (double threshold : new double[] { 0.0, 0.7, 0.8, 0.9, 0.95 }) {
+					int count = 0;
+					for (int i = 0; i < candidates.length; i++) {
+						if (JaroWinklerSimilarity.score(candidates[i], query, threshold) >= 0) {
+							count++;
+						}
+					}
+					assertEquals(count, JaroWinklerSimilarity.score(query, candidates, threshold, out));
+					for (int i = 0; i < candidates.length; i++) {
+						String caseDescription = "Query: \"" + query + "\", Candidate: \"" + candidates[i]
+								+ "\", Threshold: " + threshold;
+						assertEquals(caseDescription, JaroWinklerSimilarity.score(candidates[i], query, threshold),
+								out[i], 0.0);
+					}
+					// remaining positions are not modified
+					assertEquals(2.0, out[candidates.length], 0.0);
+				}
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void scoreCandidatesShortOutput() {
+		JaroWinklerSimilarity.score("a", new String[] { "a", "b" }, 0.0, new double[1]);
+	}
+
+	@Test
+	public void scoreWordBoundaries() {
+		Random random = new Random(0);
+		char[] alphabet = { 'a', 'b', '\u00E4', '\u0101', '\u0102' };
+		List<String> strings = new ArrayList<String>();
+		for (int length : new int[] { 0, 1, 63, 64, 65, 127, 128, 129, 200 }) {
+			for (int i = 0; i < 4; i++) {
+				StringBuilder string = new StringBuilder();
+				for (int j = 0; j < length; j++) {
+					string.append(alphabet[random.nextInt(alphabet.length)]);
+				}
+				strings.add(string.toString());
+			}
+		}
+		JaroWinklerSimilarity<String> jws = JaroWinklerSimilarity.with(strings, 0.0);
+		for (String query : strings) {
+			Map<String, Double> result = jws.apply(query, 0.0);
+			for (String term : strings) {
+				String caseDescription = "Query: \"" + query + "\", Term: \"" + term + "\"";
+				double expected = result.get(term);
+				assertEquals(caseDescription, expected, JaroWinklerSimilarity.score(term, query), 0.0);
+				assertEquals(caseDescription, expected >= 0.8 ? expected : JaroWinklerSimilarity.BELOW_THRESHOLD,
+						JaroWinklerSimilarity.score(term, query, 0.8), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void topK() {
+		Random random = new Random(0);
+		for (int testCase = 0; testCase < 20; testCase++) {
+			Map<String, String> terms = new HashMap<String, String>();
+			for (String term : randomStrings(random, 200, testCase % 2 == 0 ? 12 : 70)) {
+				// several keys per value
+				terms.put(term, term.substring(0, Math.min(2, term.length())));
+			}
+			JaroWinklerSimilarity<String> jws = JaroWinklerSimilarity.with(terms, 0.0);
+			for (String query : randomStrings(random, 10, testCase % 2 == 0 ? 12 : 70)) {
+				for (double threshold : new double[] { 0.0, 0.7, 0.9 }) {
+					for (int k : new int[] { 1, 3, 10, 1000 }) {
+						Map<String, Double> all = jws.apply(query, threshold);
+						List<Double> expected = new ArrayList<Double>(all.values());
+						expected.sort(Collections.reverseOrder());
+						expected = expected.subList(0, Math.min(k, expected.size()));
+
+						Map<String, Double> top = jws.topK(query, k, threshold);
+						String caseDescription = "Query: \"" + query + "\", k: " + k + ", Threshold: " + threshold;
+						assertEquals(caseDescription, expected, new ArrayList<Double>(top.values()));
+						for (Entry<String, Double> entry : top.entrySet()) {
+							assertEquals(caseDescription, all.get(entry.getKey()), entry.getValue());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void applyAll() {
+		Random random = new Random(0);
+		List<String> terms = randomStrings(random, 300, 20);
+		JaroWinklerSimilarity<String> jws = JaroWinklerSimilarity.with(terms, 0.8);
+		List<String> queries = randomStrings(random, 50, 20);
+		// duplicates
+		queries.addAll(queries.subList(0, 10));
+		Map<String, Map<String, Double>> results = jws.applyAll(queries);
+		assertEquals(new HashSet<String>(queries), results.keySet());
+		for (String query : queries) {
+			assertEquals(jws.apply(query), results.get(query));
+		}
+	}
+
+	@Test
+	public void applyParallel() {
+		Random random = new Random(0);
+		List<String> terms = randomStrings(random, 1000, 70);
+		// match of the root
+		terms.add("");
+		Map<String, Integer> termMap = new HashMap<String, Integer>();
+		for (String term : terms) {
+			termMap.put(term, term.length() % 7);
+		}
+		JaroWinklerSimilarity<String> jwsSet = JaroWinklerSimilarity.with(terms, 0.0);
+		JaroWinklerSimilarity<Integer> jwsMap = JaroWinklerSimilarity.with(termMap, 0.0);
+		for (String query : randomStrings(random, 20, 70)) {
+			for (double threshold : new double[] { 0.0, 0.5, 0.7, 0.8, 0.9 }) {
+				assertEquals(jwsSet.apply(query, threshold), jwsSet.applyParallel(query, threshold));
+				assertEquals(jwsMap.apply(query, threshold), jwsMap.applyParallel(query, threshold));
+			}
+		}
+		// single term
+		JaroWinklerSimilarity<String> jwsSingleton = JaroWinklerSimilarity.with(Collections.singleton("abcd"), 0.0);
+		assertEquals(jwsSingleton.apply("abdc", 0.0), jwsSingleton.applyParallel("abdc", 0.0));
+	}
+
+	@Test
+	public void applySink() {
+		Random random = new Random(0);
+		List<String> terms = randomStrings(random, 300, 20);
+		Map<String, Integer> termMap = new HashMap<String, Integer>();
+		for (String term : terms) {
+			termMap.put(term, term.length() % 7);
+		}
+		JaroWinklerSimilarity<String> jwsSet = JaroWinklerSimilarity.with(terms, 0.8);
+		JaroWinklerSimilarity<Integer> jwsMap = JaroWinklerSimilarity.with(termMap, 0.8);
+		for (String query : randomStrings(random, 50, 20)) {
+			// streaming
+			Map<String, Double> setResults = new HashMap<String, Double>();
+			assertTrue(jwsSet.apply(query, 0.8, (value, similarity) -> setResults.put(value, similarity) == null));
+			assertEquals(jwsSet.apply(query, 0.8), setResults);
+
+			// deduplicated
+			Map<Integer, Double> mapResults = new HashMap<Integer, Double>();
+			assertTrue(jwsMap.apply(query, 0.8, (value, similarity) -> mapResults.put(value, similarity) == null,
+					true));
+			assertEquals(jwsMap.apply(query, 0.8), mapResults);
+
+			// reusable container
+			SimilarityResults<Integer> containerResults = new SimilarityResults<Integer>(true);
+			jwsMap.apply(query, 0.8, containerResults);
+			assertEquals(mapResults, containerResults.toMap());
+
+			// early stop
+			if (setResults.size() > 1) {
+				List<String> stopResults = new ArrayList<String>();
+				assertFalse(jwsSet.apply(query, 0.8, (value, similarity) -> stopResults.add(value) && false));
+				assertEquals(1, stopResults.size());
+			}
+		}
+	}
+
+	@Test
+	public void selfJoin() {
+		Random random = new Random(0);
+		List<String> terms = randomStrings(random, 1000, 20);
+		terms.add("");
+		JaroWinklerSimilarity<String> jws = JaroWinklerSimilarity.with(terms, 0.0);
+		for (double threshold : new double[] { 0.0, 0.7, 0.8, 0.9 }) {
+			Map<String, Double> expected = new HashMap<String, Double>();
+			for (String term : new HashSet<String>(terms)) {
+				for (Entry<String, Double> result : jws.apply(term, threshold).entrySet()) {
+					if (term.compareTo(result.getKey()) < 0) {
+						expected.put(term + "|" + result.getKey(), result.getValue());
+					}
+				}
+			}
+			Map<String, Double> actual = new ConcurrentHashMap<String, Double>();
+			AtomicInteger count = new AtomicInteger();
+			assertTrue(jws.selfJoin(threshold, (left, right, similarity) -> {
+				count.incrementAndGet();
+				actual.put(left.compareTo(right) < 0 ? left + "|" + right : right + "|" + left, similarity);
+				return true;
+			}));
+			assertEquals(expected, actual);
+			assertEquals(expected.size(), count.get());
+		}
+		// early stop
+		AtomicInteger count = new AtomicInteger();
+		assertFalse(jws.selfJoin(0.8, (left, right, similarity) -> count.incrementAndGet() < 10,
+				new ForkJoinPool(1)));
+		assertEquals(10, count.get());
+	}
+
+	@Test
+	public void join() {
+		Random random = new Random(0);
+		JaroWinklerSimilarity<String> jws = JaroWinklerSimilarity.with(randomStrings(random, 1000, 20), 0.0);
+		List<String> left = randomStrings(random, 300, 25);
+		Map<String, Integer> leftMap = new HashMap<String, Integer>();
+		for (String term : left) {
+			leftMap.put(term, term.hashCode());
+		}
+		for (double threshold : new double[] { 0.0, 0.7, 0.8, 0.9 }) {
+			Map<String, Double> expected = new HashMap<String, Double>();
+			for (String term : left) {
+				for (Entry<String, Double> result : jws.apply(term, threshold).entrySet()) {
+					expected.put(term.hashCode() + "|" + result.getKey(), result.getValue());
+				}
+			}
+			Map<String, Double> actual = new ConcurrentHashMap<String, Double>();
+			AtomicInteger count = new AtomicInteger();
+			assertTrue(jws.join(leftMap, threshold, (leftValue, rightValue, similarity) -> {
+				count.incrementAndGet();
+				actual.put(leftValue + "|" + rightValue, similarity);
+				return true;
+			}));
+			assertEquals(expected, actual);
+			assertEquals(expected.size(), count.get());
+
+			// written pairs
+			StringWriter out = new StringWriter();
+			assertTrue(jws.join(left, threshold, SimilarityPairSink.writer(out)));
+			String[] lines = out.toString().split("\n", -1);
+			assertEquals(expected.size(), lines.length - 1);
+		}
+	}
+
+	@Test
+	public void anyMatch() {
+		Random random = new Random(0);
+		List<String> terms = randomStrings(random, 300, 20);
+		terms.add("");
+		Map<String, Integer> termMap = new HashMap<String, Integer>();
+		for (String term : terms) {
+			termMap.put(term, term.length());
+		}
+		JaroWinklerSimilarity<String> jwsSet = JaroWinklerSimilarity.with(terms, 0.0);
+		JaroWinklerSimilarity<Integer> jwsMap = JaroWinklerSimilarity.with(termMap, 0.0);
+		List<String> queries = randomStrings(random, 100, 25);
+		queries.addAll(terms.subList(0, 20));
+		queries.add("");
+		for (String query : queries) {
+			for (double threshold : new double[] { 0.0, 0.8, 0.9, 0.95, 1.0, 1.1 }) {
+				assertEquals(!jwsSet.apply(query, threshold).isEmpty(), jwsSet.anyMatch(query, threshold));
+				assertEquals(!jwsMap.apply(query, threshold).isEmpty(), jwsMap.anyMatch(query, threshold));
+			}
+		}
+		JaroWinklerSimilarity<String> jwsSingleton = JaroWinklerSimilarity.with(Collections.singleton("abcd"), 0.0);
+		assertTrue(jwsSingleton.anyMatch("abcd", 1.0));
+		assertTrue(jwsSingleton.anyMatch("abdc", 0.9));
+		assertFalse(jwsSingleton.anyMatch("abc", 1.0));
+		assertFalse(JaroWinklerSimilarity.with(Collections.<String>emptySet(), 0.0).anyMatch("", 0.0));
+		JaroWinklerSimilarity<String> jwsEmpty = JaroWinklerSimilarity.with(Arrays.asList("", "abc"), 0.0);
+		assertFalse(jwsEmpty.anyMatch("", 0.9));
+		assertEquals(0, jwsEmpty.count("", 0.9));
+	}
+
+	@Test
+	public void count() {
+		Random random = new Random(0);
+		List<String> terms = randomStrings(random, 300, 20);
+		Map<String, Integer> termMap = new HashMap<String, Integer>();
+		for (String term : terms) {
+			termMap.put(term, term.length());
+		}
+		JaroWinklerSimilarity<String> jwsSet = JaroWinklerSimilarity.with(terms, 0.0);
+		JaroWinklerSimilarity<Integer> jwsMap = JaroWinklerSimilarity.with(termMap, 0.0);
+		for (String query : randomStrings(random, 100, 25)) {
+			for (double threshold : new double[] { 0.0, 0.8, 0.9, 1.0 }) {
+				assertEquals(jwsSet.apply(query, threshold).size(), jwsSet.count(query, threshold));
+				// count terms instead of values
+				AtomicInteger count = new AtomicInteger();
+				jwsMap.apply(query, threshold, (value, similarity) -> count.incrementAndGet() > 0);
+				assertEquals(count.get(), jwsMap.count(query, threshold));
+			}
+		}
+	}
+
+	@Test
+	public void normalized() {
+		Function<String, String> normalizer = term -> Normalizer.normalize(term, Normalizer.Form.NFD)
+				.replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+		List<String> terms = Arrays.asList("M\u00FCller", "MULLER", "Mueller", "Miller", "Maier", "Meyer",
+				"M\u00E9yer");
+		JaroWinklerSimilarity<String> jws = JaroWinklerSimilarity.with(terms, 0.9, normalizer);
+
+		Map<String, Double> expected = new HashMap<String, Double>();
+		for (String term : terms) {
+			Double similarity = JaroWinklerSimilarity.of(normalizer.apply(term), "muller", 0.9);
+			if (similarity != null) {
+				expected.put(term, similarity);
+			}
+		}
+		assertEquals(expected, jws.apply("M\u00DCLLER"));
+		assertEquals(1.0, jws.apply("M\u00DCLLER").get("M\u00FCller"), 0.0);
+		assertEquals(1.0, jws.apply("M\u00DCLLER").get("MULLER"), 0.0);
+		assertEquals(2, jws.count("muller", 1.0));
+		assertTrue(jws.anyMatch("MEYER", 1.0));
+		assertEquals(jws.apply("M\u00DCLLER"), jws.applyParallel("M\u00DCLLER", 0.9));
+
+		// pairs of terms equal after normalization
+		Map<String, Double> pairs = new ConcurrentHashMap<String, Double>();
+		assertTrue(jws.selfJoin(1.0, (left, right, similarity) -> {
+			pairs.put(left.compareTo(right) < 0 ? left + "|" + right : right + "|" + left, similarity);
+			return true;
+		}));
+		Map<String, Double> expectedPairs = new HashMap<String, Double>();
+		expectedPairs.put("MULLER|M\u00FCller", 1.0);
+		expectedPairs.put("Meyer|M\u00E9yer", 1.0);
+		assertEquals(expectedPairs, pairs);
+
+		// join with normalized keys
+		Map<String, Double> joined = new ConcurrentHashMap<String, Double>();
+		assertTrue(jws.join(Arrays.asList("M\u00DCLLER"), 0.9, (left, right, similarity) -> {
+			joined.put(right, similarity);
+			return true;
+		}));
+		assertEquals(expected, joined);
+
+		// scan of normalized terms
+		jws.setEngine(JaroWinklerSimilarity.Engine.SCAN);
+		assertEquals(expected, jws.apply("M\u00DCLLER"));
+		assertEquals(2, jws.count("muller", 1.0));
+	}
+
+	@Test
+	public void scanEngine() {
+		Random random = new Random(0);
+		for (int testCase = 0; testCase < 10; testCase++) {
+			Map<String, String> terms = new HashMap<String, String>();
+			for (String term : randomStrings(random, 300, testCase % 2 == 0 ? 12 : 70)) {
+				// several keys per value
+				terms.put(term, term.substring(0, Math.min(2, term.length())));
+			}
+			terms.put("", "");
+			JaroWinklerSimilarity<String> trie = JaroWinklerSimilarity.with(terms, 0.0);
+			JaroWinklerSimilarity<String> scan = JaroWinklerSimilarity.with(terms, 0.0);
+			scan.setEngine(JaroWinklerSimilarity.Engine.SCAN);
+			assertEquals(JaroWinklerSimilarity.Engine.SCAN, scan.engine());
+			List<String> queries = randomStrings(random, 10, testCase % 2 == 0 ? 12 : 70);
+			queries.add("");
+			for (String query : queries) {
+				for (double threshold : new double[] { 0.0, 0.7, 0.8, 0.9, 1.0 }) {
+					String caseDescription = "Query: \"" + query + "\", Threshold: " + threshold;
+					assertEquals(caseDescription, trie.apply(query, threshold), scan.apply(query, threshold));
+					assertEquals(caseDescription, trie.count(query, threshold), scan.count(query, threshold));
+					assertEquals(caseDescription, trie.anyMatch(query, threshold), scan.anyMatch(query, threshold));
+					assertEquals(caseDescription, new ArrayList<Double>(trie.topK(query, 3, threshold).values()),
+							new ArrayList<Double>(scan.topK(query, 3, threshold).values()));
+				}
+			}
+		}
+
+		// pairs of terms
+		List<String> terms = randomStrings(random, 300, 20);
+		JaroWinklerSimilarity<String> trie = JaroWinklerSimilarity.with(terms, 0.0);
+		JaroWinklerSimilarity<String> scan = JaroWinklerSimilarity.with(terms, 0.0);
+		scan.setEngine(JaroWinklerSimilarity.Engine.SCAN);
+		for (double threshold : new double[] { 0.7, 0.9 }) {
+			Map<String, Double> expected = new ConcurrentHashMap<String, Double>();
+			assertTrue(trie.selfJoin(threshold, (left, right, similarity) -> {
+				expected.put(left.compareTo(right) < 0 ? left + "|" + right : right + "|" + left, similarity);
+				return true;
+			}));
+			Map<String, Double> actual = new ConcurrentHashMap<String, Double>();
+			assertTrue(scan.selfJoin(threshold, (left, right, similarity) -> {
+				actual.put(left.compareTo(right) < 0 ? left + "|" + right : right + "|" + left, similarity);
+				return true;
+			}));
+			assertEquals(expected, actual);
+		}
+
+		// nested query of a sink
+		Map<String, Double> nested = new HashMap<String, Double>();
+		scan.apply("abcd", 0.8, (value, similarity) -> {
+			nested.put(value, JaroWinklerSimilarity.score(value, "abcd", 0.8));
+			return true;
+		});
+		assertEquals(trie.apply("abcd", 0.8), nested);
+
+		// switch back
+		scan.setEngine(JaroWinklerSimilarity.Engine.TRIE);
+		assertEquals(trie.apply("abcd", 0.8), scan.apply("abcd", 0.8));
+	}
+
+	@Test
+	public void qgramEngine() {
+		Random random = new Random(0);
+		for (int testCase = 0; testCase < 10; testCase++) {
+			Map<String, String> terms = new HashMap<String, String>();
+			for (String term : randomStrings(random, 300, testCase % 2 == 0 ? 12 : 70)) {
+				// several keys per value
+				terms.put(term, term.substring(0, Math.min(2, term.length())));
+			}
+			terms.put("", "");
+			terms.put("\u00E9\u00E9t\u00E9", "\u00E9t\u00E9");
+			JaroWinklerSimilarity<String> trie = JaroWinklerSimilarity.with(terms, 0.0);
+			JaroWinklerSimilarity<String> qgram = JaroWinklerSimilarity.with(terms, 0.0);
+			qgram.setEngine(JaroWinklerSimilarity.Engine.QGRAM);
+			assertEquals(JaroWinklerSimilarity.Engine.QGRAM, qgram.engine());
+			List<String> queries = randomStrings(random, 10, testCase % 2 == 0 ? 12 : 70);
+			queries.add("");
+			queries.add("\u00E9t\u00E9");
+			for (String query : queries) {
+				for (double threshold : new double[] { 0.0, 0.7, 0.8, 0.9, 1.0 }) {
+					String caseDescription = "Query: \"" + query + "\", Threshold: " + threshold;
+					assertEquals(caseDescription, trie.apply(query, threshold), qgram.apply(query, threshold));
+					assertEquals(caseDescription, trie.count(query, threshold), qgram.count(query, threshold));
+					assertEquals(caseDescription, trie.anyMatch(query, threshold), qgram.anyMatch(query, threshold));
+					assertEquals(caseDescription, new ArrayList<Double>(trie.topK(query, 3, threshold).values()),
+							new ArrayList<Double>(qgram.topK(query, 3, threshold).values()));
+					assertTrue(caseDescription, qgram.plan(query, threshold).estimatedWork() >= 0);
+				}
+			}
+		}
+
+		// pairs of terms
+		List<String> terms = randomStrings(random, 300, 20);
+		JaroWinklerSimilarity<String> trie = JaroWinklerSimilarity.with(terms, 0.0);
+		JaroWinklerSimilarity<String> qgram = JaroWinklerSimilarity.with(terms, 0.0);
+		qgram.setEngine(JaroWinklerSimilarity.Engine.QGRAM);
+		for (double threshold : new double[] { 0.7, 0.9 }) {
+			Map<String, Double> expected = new ConcurrentHashMap<String, Double>();
+			assertTrue(trie.selfJoin(threshold, (left, right, similarity) -> {
+				expected.put(left.compareTo(right) < 0 ? left + "|" + right : right + "|" + left, similarity);
+				return true;
+			}));
+			Map<String, Double> actual = new ConcurrentHashMap<String, Double>();
+			assertTrue(qgram.selfJoin(threshold, (left, right, similarity) -> {
+				actual.put(left.compareTo(right) < 0 ? left + "|" + right : right + "|" + left, similarity);
+				return true;
+			}));
+			assertEquals(expected, actual);
+		}
+
+		// nested query of a sink
+		Map<String, Double> nested = new HashMap<String, Double>();
+		qgram.apply("abcd", 0.8, (value, similarity) -> {
+			nested.put(value, qgram.apply(value, 1.0).get(value));
+			return true;
+		});
+		assertEquals(trie.apply("abcd", 0.8).keySet(), nested.keySet());
+		assertTrue(nested.values().stream().allMatch(similarity -> similarity == 1.0));
+
+		// estimate of the index only if created
+		assertEquals(-1, trie.plan("abcd", 0.8).estimatedWork(JaroWinklerSimilarity.Engine.QGRAM));
+	}
+
+	@Test
+	public void autoEngine() {
+		Random random = new Random(0);
+		List<String> terms = randomStrings(random, 1000, 30);
+		JaroWinklerSimilarity<String> trie = JaroWinklerSimilarity.with(terms, 0.0);
+		JaroWinklerSimilarity<String> auto = JaroWinklerSimilarity.with(terms, 0.0);
+		auto.setEngine(JaroWinklerSimilarity.Engine.AUTO);
+		List<String> queries = randomStrings(random, 20, 30);
+		queries.add("");
+		for (String query : queries) {
+			for (double threshold : new double[] { 0.0, 0.7, 0.8, 0.9, 0.95, 1.0 }) {
+				String caseDescription = "Query: \"" + query + "\", Threshold: " + threshold;
+				assertEquals(caseDescription, trie.apply(query, threshold), auto.apply(query, threshold));
+				assertEquals(caseDescription, trie.count(query, threshold), auto.count(query, threshold));
+
+				QueryPlan plan = auto.plan(query, threshold);
+				assertTrue(caseDescription, plan.engine() != JaroWinklerSimilarity.Engine.AUTO);
+				assertEquals(caseDescription, -1, plan.actualWork());
+				assertTrue(caseDescription, plan.estimatedWork(JaroWinklerSimilarity.Engine.TRIE) >= 0);
+				assertTrue(caseDescription, plan.estimatedWork(JaroWinklerSimilarity.Engine.SCAN) >= 0);
+				assertTrue(caseDescription, plan.estimatedWork(JaroWinklerSimilarity.Engine.QGRAM) >= 0);
+				if (plan.engine() != JaroWinklerSimilarity.Engine.QGRAM) {
+					// cheapest engine chosen
+					assertTrue(caseDescription, plan.estimatedWork() <= Math.max(
+							plan.estimatedWork(JaroWinklerSimilarity.Engine.TRIE),
+							plan.estimatedWork(JaroWinklerSimilarity.Engine.SCAN)));
+				}
+
+				QueryPlan executed = auto.explain(query, threshold);
+				assertEquals(caseDescription, plan.engine(), executed.engine());
+				assertEquals(caseDescription, plan.estimatedWork(), executed.estimatedWork());
+				assertTrue(caseDescription, executed.actualWork() >= 0);
+			}
+		}
+
+		// selected engine
+		assertEquals(JaroWinklerSimilarity.Engine.TRIE, trie.plan("abcd", 0.8).engine());
+		assertTrue(trie.explain("abcd", 0.8).actualWork() > 0);
+		auto.setEngine(JaroWinklerSimilarity.Engine.SCAN);
+		assertEquals(JaroWinklerSimilarity.Engine.SCAN, auto.plan("abcd", 0.8).engine());
+		assertTrue(auto.explain("abcd", 0.8).actualWork() > 0);
+
+		// no terms of matching length
+		QueryPlan plan = trie.explain("abcd", 1.1);
+		assertEquals(0, plan.estimatedWork(JaroWinklerSimilarity.Engine.TRIE));
+		assertEquals(0, plan.estimatedWork(JaroWinklerSimilarity.Engine.SCAN));
+		assertEquals(0, plan.actualWork());
+	}
+
+	@Test
+	public void setEngineConcurrently() throws InterruptedException {
+		Random random = new Random(0);
+		List<String> terms = randomStrings(random, 1000, 20);
+		List<String> queries = randomStrings(random, 50, 20);
+		JaroWinklerSimilarity<String> expected = JaroWinklerSimilarity.with(terms, 0.8);
+		for (int testCase = 0; testCase < 5; testCase++) {
+			JaroWinklerSimilarity<String> jws = JaroWinklerSimilarity.with(terms, 0.8);
+			AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+			Thread queryThread = new Thread(() -> {
+				try {
+					for (int i = 0; i < 10; i++) {
+						for (String query : queries) {
+							assertEquals(expected.apply(query), jws.apply(query));
+						}
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			});
+			queryThread.start();
+			for (JaroWinklerSimilarity.Engine engine : JaroWinklerSimilarity.Engine.values()) {
+				jws.setEngine(engine);
+			}
+			jws.setEngine(JaroWinklerSimilarity.Engine.AUTO);
+			queryThread.join();
+			assertEquals(null, failure.get());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void planEstimatedWorkOfAuto() {
+		JaroWinklerSimilarity.with(Arrays.asList("abcd"), 0.0).plan("abcd", 0.8)
+				.estimatedWork(JaroWinklerSimilarity.Engine.AUTO);
+	}
+
+	@Test
+	public void termLengthRange() {
+		for (int queryLength = 0; queryLength <= 40; queryLength++) {
+			for (double threshold : new double[] { 0.0, 0.5, 0.6, 0.7, 0.8, 0.85, 0.9, 0.95, 0.99, 1.0, 1.1 }) {
+				int minTermLength = JaroWinklerSimilarity.minTermLength(queryLength, threshold);
+				int maxTermLength = JaroWinklerSimilarity.maxTermLength(queryLength, threshold);
+				for (int termLength = 0; termLength <= 1000; termLength++) {
+					String caseDescription = "Query Length: " + queryLength + ", Term Length: " + termLength
+							+ ", Threshold: " + threshold;
+					assertEquals(caseDescription,
+							JaroWinklerSimilarity.maxSimilarity(queryLength, termLength) >= threshold,
+							minTermLength <= termLength && termLength <= maxTermLength);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void deepTrie() throws InterruptedException {
+		// all prefixes of a long string form a trie of one node per character
+		String term = randomStrings(new Random(0), 1, 3000).get(0);
+		while (term.length() < 3000) {
+			term += term;
+		}
+		Map<String, String> termMap = new HashMap<String, String>();
+		for (int length = 1; length <= term.length(); length++) {
+			termMap.put(term.substring(0, length), term.substring(0, length));
+		}
+		List<JaroWinklerSimilarity<String>> instances = Arrays.asList(JaroWinklerSimilarity.with(termMap, 0.99),
+				JaroWinklerSimilarity.with(termMap.keySet(), 0.99));
+
+		// match on a thread with a small stack
+		String query = term;
+		for (JaroWinklerSimilarity<String> jws : instances) {
+			for (JaroWinklerSimilarity.Engine engine : JaroWinklerSimilarity.Engine.values()) {
+				Map<String, Map<String, Double>> results = new ConcurrentHashMap<String, Map<String, Double>>();
+				Thread thread = new Thread(null, () -> {
+					jws.setEngine(engine);
+					results.put(query, jws.apply(query));
+				}, "small stack", 1 << 17);
+				thread.start();
+				thread.join();
+				assertEquals(engine.toString(), 1.0, results.get(query).get(term), 0.0);
+			}
+		}
+	}
+
+	/**
+	 * @return Strings of a small alphabet to cause many common characters and
+	 *         transpositions.
+	 */
+	private static List<String> randomStrings(Random random, int count, int maxLength) {
+		List<String> strings = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			StringBuilder string = new StringBuilder();
+			int length = 1 + random.nextInt(maxLength);
+			for (int j = 0; j < length; j++) {
+				string.append((char) ('a' + random.nextInt(4)));
+			}
+			strings.add(string.toString());
+		}
+		return strings;
+	}
+
 	/**
 	 * @return Cases causing problems in earlier versions or other implementations
 	 *         and some extreme cases.
@@ -40,4 +40,26 @@ public class MemoryConsumption {
 		System.out.print(measuredObject.getClass().toString().substring(0, 0));
 		return memoryAfter - memoryBefore;
 	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread during the
+	 * execution of the given {@link Runnable}, or {@code -1}, if the JVM does not
+	 * support the measurement.
+	 */
+	public static long allocatedBy(Runnable runnableUnderTest) {
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)
+				|| !((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+		long threadId = Thread.currentThread().getId();
+		// warm up call to not measure e.g. ClassLoader footprint
+		runnableUnderTest.run();
+		long allocatedBefore = allocationMXBean.getThreadAllocatedBytes(threadId);
+		// measured call
+		runnableUnderTest.run();
+		long allocatedAfter = allocationMXBean.getThreadAllocatedBytes(threadId);
+		return allocatedAfter - allocatedBefore;
+	}
 }
@@ -0,0 +1,86 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SimilarityResultsTest {
+
+	@Test
+	public void deduplicate() {
+		Random random = new Random(0);
+		SimilarityResults<Integer> results = new SimilarityResults<Integer>(true);
+		for (int round = 0; round < 3; round++) {
+			Map<Integer, Double> expected = new HashMap<Integer, Double>();
+			for (int i = 0; i < 1000; i++) {
+				Integer value = random.nextInt(300);
+				double similarity = random.nextDouble();
+				expected.merge(value, similarity, Math::max);
+				results.accept(value, similarity);
+			}
+			assertEquals(expected.size(), results.size());
+			assertEquals(expected, results.toMap());
+			results.sortBySimilarity();
+			assertEquals(expected, results.toMap());
+			// index still valid after sorting
+			results.accept(results.value(results.size() - 1), 2.0);
+			assertEquals(expected.size(), results.size());
+			assertEquals(2.0, results.similarity(results.size() - 1), 0.0);
+			results.clear();
+			assertTrue(results.isEmpty());
+		}
+	}
+
+	@Test
+	public void sortBySimilarity() {
+		Random random = new Random(0);
+		SimilarityResults<Integer> results = new SimilarityResults<Integer>();
+		List<Double> expected = new ArrayList<Double>();
+		for (int i = 0; i < 1000; i++) {
+			double similarity = random.nextInt(100) / 100.0;
+			expected.add(similarity);
+			results.accept(i, similarity);
+		}
+		expected.sort((a, b) -> Double.compare(b, a));
+		results.sortBySimilarity();
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals(expected.get(i), results.similarity(i), 0.0);
+		}
+		assertEquals(1000, results.toMap().size());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void outOfRange() {
+		SimilarityResults<Integer> results = new SimilarityResults<Integer>();
+		results.accept(1, 1.0);
+		results.clear();
+		results.value(0);
+	}
+}
@@ -0,0 +1,122 @@
+package de.uni_jena.cs.fusion.similarity.jarowinkler;
+
+/*-
+ * #%L
+ * Jaro Winkler Similarity
+ * %%
+ * Copyright (C) 2018 Heinz Nixdorf Chair for Distributed Information Systems, Friedrich Schiller University Jena
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TraversalStateTest {
+
+	@Test
+	public void bitOperations() {
+		Random random = new Random(0);
+		for (int queryLength : new int[] { 1, 5, 63, 64, 65, 127, 128, 129, 200 }) {
+			StringBuilder queryBuilder = new StringBuilder();
+			for (int i = 0; i < queryLength; i++) {
+				queryBuilder.append((char) ('a' + random.nextInt(3)));
+			}
+			String query = queryBuilder.toString();
+			TraversalState state = TraversalState.acquire(queryLength, queryLength);
+			try {
+				state.setQuery(query);
+				boolean[] expected = new boolean[queryLength];
+				for (int i = 0; i < queryLength; i++) {
+					if (random.nextBoolean()) {
+						expected[i] = true;
+						state.assign(i);
+					}
+				}
+				for (int i = 0; i < queryLength; i += 3) {
+					expected[i] = false;
+					state.unassign(i);
+				}
+				for (int lowerBound = 0; lowerBound < queryLength; lowerBound++) {
+					for (int upperBound = lowerBound - 1; upperBound < queryLength; upperBound++) {
+						int unassigned = 0;
+						int unassignedB = 0;
+						int firstAssigned = -1;
+						int firstUnassignedB = -1;
+						for (int i = lowerBound; i <= upperBound; i++) {
+							if (expected[i]) {
+								if (firstAssigned == -1) {
+									firstAssigned = i;
+								}
+							} else {
+								unassigned++;
+								if (query.charAt(i) == 'b') {
+									unassignedB++;
+								}
+								if (firstUnassignedB == -1 && query.charAt(i) == 'b') {
+									firstUnassignedB = i;
+								}
+							}
+						}
+						assertEquals(unassigned, state.countUnassigned(lowerBound, upperBound));
+						assertTrue(state.restrict(Trie.signature('b')));
+						assertEquals(unassignedB, state.countUnassignedEligible(lowerBound, upperBound));
+						if (state.restrict(Trie.signature('a') | Trie.signature('c'))) {
+							assertEquals(unassigned - unassignedB,
+									state.countUnassignedEligible(lowerBound, upperBound));
+						}
+						assertFalse(state.restrict(-1L));
+						assertEquals(firstAssigned, state.nextAssigned(lowerBound, upperBound));
+						assertEquals(firstUnassignedB, state.findUnassigned('b', lowerBound, upperBound));
+					}
+					assertEquals(expected[lowerBound], state.isAssigned(lowerBound));
+				}
+			} finally {
+				state.release();
+			}
+		}
+	}
+
+	@Test
+	public void contains() {
+		TraversalState state = TraversalState.acquire(4, 4);
+		try {
+			state.setQuery("a\u00E4b");
+			assertTrue(state.contains('a'));
+			assertTrue(state.contains('\u00E4'));
+			assertFalse(state.contains('c'));
+			assertFalse(state.contains('\u0101'));
+			assertEquals(-1, state.findUnassigned('c', 0, 2));
+
+			state.setQuery("\u0101c\u0102\u0101");
+			assertFalse(state.contains('a'));
+			assertTrue(state.contains('c'));
+			assertTrue(state.contains('\u0101'));
+			assertTrue(state.contains('\u0102'));
+			assertFalse(state.contains('\u0103'));
+			assertEquals(0, state.findUnassigned('\u0101', 0, 3));
+			assertEquals(3, state.findUnassigned('\u0101', 1, 3));
+			state.assign(0);
+			assertEquals(3, state.findUnassigned('\u0101', 0, 3));
+			assertEquals(-1, state.findUnassigned('\u0103', 0, 3));
+		} finally {
+			state.release();
+		}
+	}
+}
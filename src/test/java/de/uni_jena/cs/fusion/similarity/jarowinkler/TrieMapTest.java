@@ -24,10 +24,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -204,6 +206,65 @@ public class TrieMapTest {
 		assertEquals(1, bNode.keyLength());
 	}
 
+	@Test
+	public void latin1Symbols() {
+		Map<String, String> latin1 = new LinkedHashMap<String, String>();
+		for (String key : Arrays.asList("M\u00FCller", "M\u00FCnster", "Meyer", "\u00FF", "")) {
+			latin1.put(key, key);
+		}
+		assertKeys(latin1, new TrieMap<>(latin1));
+
+		// change after compaction
+		TrieMap<String> trieMap = new TrieMap<>(latin1);
+		Map<String, String> changed = new LinkedHashMap<String, String>(latin1);
+		for (String key : Arrays.asList("M\u00FCll", "Me\u0101r")) {
+			trieMap.put(key, key);
+			changed.put(key, key);
+		}
+		assertKeys(changed, trieMap);
+
+		// fallback for other characters
+		Map<String, String> other = new LinkedHashMap<String, String>(latin1);
+		other.put("\u0101b", "\u0101b");
+		assertKeys(other, new TrieMap<>(other));
+	}
+
+	@Test
+	public void latin1LookupWithoutAllocation() {
+		Map<String, String> latin1 = new LinkedHashMap<String, String>();
+		for (String key : Arrays.asList("M\u00FCller", "M\u00FCnster", "Meyer", "\u00FF", "")) {
+			latin1.put(key, key);
+		}
+		TrieMap<String> trie = new TrieMap<>(latin1);
+		String[] keys = latin1.keySet().toArray(new String[0]);
+		long allocated = MemoryConsumption.allocatedBy(() -> {
+			for (int i = 0; i < 1000; i++) {
+				for (int j = 0; j < keys.length; j++) {
+					assertEquals(keys[j], trie.get(keys[j]));
+				}
+			}
+		});
+		assumeTrue(allocated >= 0);
+		// allocation of a symbol per lookup would take several kilobytes
+		assertTrue(allocated < 1000);
+	}
+
+	private static void assertKeys(Map<String, String> expected, TrieMap<String> trieMap) {
+		Map<String, String> actual = new LinkedHashMap<String, String>();
+		for (Iterator<? extends Trie<String>> iterator = trieMap.populatedNodeIterator(); iterator.hasNext();) {
+			Trie<String> node = iterator.next();
+			actual.put(node.key(), node.value());
+			assertEquals(node.key().length(), node.keyLength());
+			for (int i = 0; i < node.symbolLength(); i++) {
+				assertEquals(node.symbol().charAt(i), node.symbolChar(i));
+			}
+		}
+		assertEquals(expected, actual);
+		for (String key : expected.keySet()) {
+			assertEquals(key, trieMap.get(key));
+		}
+	}
+
 	@Test
 	public void put() {
 		TrieMap<String> trieMap = new TrieMap<>();
@@ -313,6 +374,15 @@ public class TrieMapTest {
 		assertEquals(4, trieMap.size());
 	}
 
+	@Test
+	public void suffixSignature() {
+		TrieMap<String> trieMap = new TrieMap<>();
+		for (String key : Arrays.asList("xyz", "abcde", "abc", "", "y", "abcdf", "abgh", "b\u0101")) {
+			trieMap.put(key, key);
+			TrieSetTest.assertSuffixSignature(trieMap);
+		}
+	}
+
 	@Test
 	public void symbol() {
 		TrieMap<String> root = new TrieMap<>();
@@ -23,6 +23,7 @@ package de.uni_jena.cs.fusion.similarity.jarowinkler;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -274,6 +275,62 @@ public class TrieSetTest {
 		assertEquals(1, bNode.keyLength());
 	}
 
+	@Test
+	public void latin1Symbols() {
+		List<String> latin1 = Arrays.asList("M\u00FCller", "M\u00FCnster", "Meyer", "\u00FF", "");
+		TrieSet trieSet = new TrieSet(latin1);
+		assertTrue(trieSet.child.latin1Symbol != null);
+		assertKeys(new TreeSet<String>(latin1), trieSet);
+
+		// change after compaction
+		SortedSet<String> changed = new TreeSet<String>(latin1);
+		for (String key : Arrays.asList("M\u00FCll", "Me\u0101r")) {
+			trieSet.add(key);
+			changed.add(key);
+		}
+		assertKeys(changed, trieSet);
+
+		// fallback for other characters
+		SortedSet<String> other = new TreeSet<String>(latin1);
+		other.add("\u0101b");
+		trieSet = new TrieSet(other);
+		assertTrue(trieSet.child.latin1Symbol == null);
+		assertKeys(other, trieSet);
+	}
+
+	@Test
+	public void latin1LookupWithoutAllocation() {
+		List<String> latin1 = Arrays.asList("M\u00FCller", "M\u00FCnster", "Meyer", "\u00FF", "");
+		TrieSet trie = new TrieSet(latin1);
+		String[] keys = latin1.toArray(new String[0]);
+		long allocated = MemoryConsumption.allocatedBy(() -> {
+			for (int i = 0; i < 1000; i++) {
+				for (int j = 0; j < keys.length; j++) {
+					assertTrue(trie.contains(keys[j]));
+				}
+			}
+		});
+		assumeTrue(allocated >= 0);
+		// allocation of a symbol per lookup would take several kilobytes
+		assertTrue(allocated < 1000);
+	}
+
+	private static void assertKeys(SortedSet<String> expected, TrieSet trieSet) {
+		SortedSet<String> actual = new TreeSet<String>();
+		for (Iterator<? extends Trie<String>> iterator = trieSet.populatedNodeIterator(); iterator.hasNext();) {
+			Trie<String> node = iterator.next();
+			actual.add(node.key());
+			assertEquals(node.key().length(), node.keyLength());
+			for (int i = 0; i < node.symbolLength(); i++) {
+				assertEquals(node.symbol().charAt(i), node.symbolChar(i));
+			}
+		}
+		assertEquals(expected, actual);
+		for (String key : expected) {
+			assertTrue(trieSet.contains(key));
+		}
+	}
+
 	@Test
 	public void size() {
 		TrieSet trieSet = new TrieSet();
@@ -302,6 +359,30 @@ public class TrieSetTest {
 		assertEquals(4, trieSet.size());
 	}
 
+	@Test
+	public void suffixSignature() {
+		List<String> keys = Arrays.asList("xyz", "abcde", "abc", "", "y", "abcdf", "abgh", "b\u0101");
+
+		// add one by one
+		TrieSet trieSet = new TrieSet();
+		for (String key : keys) {
+			trieSet.add(key);
+			assertSuffixSignature(trieSet);
+		}
+
+		// add all at once
+		assertSuffixSignature(new TrieSet(keys));
+	}
+
+	static long assertSuffixSignature(Trie<?> node) {
+		long expected = 0L;
+		for (Trie<?> child = node.firstChild(); child != null; child = child.nextSibling()) {
+			expected |= Trie.signature(child.symbol(), 0) | assertSuffixSignature(child);
+		}
+		assertEquals(node.key(), expected, node.suffixSignature());
+		return expected;
+	}
+
 	@Test
 	public void symbol() {
 		TrieSet root = new TrieSet();